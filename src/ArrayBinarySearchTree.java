@@ -0,0 +1,769 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Implements an ordered dictionary of pixels using an AVL-balanced binary
+ * search tree stored in parallel primitive arrays instead of BinaryNode
+ * objects. Node i of the tree has key keys[i] (see Location.key()), color
+ * colors[i], and children and parent left[i], right[i] and parent[i]. Index 0
+ * is the leaf. Removed nodes are put in a free list linked through left[] and
+ * are reused by later insertions.
+ * 
+ * A node takes 25 bytes in the arrays, while a BinaryNode with its Pixel and
+ * Location takes close to 100 bytes spread over three objects, and a traversal
+ * touches only a few contiguous arrays.
+ * 
+ * Since the nodes are not BinaryNode objects, getRoot() returns a detached node
+ * that holds a copy of the root pixel and is only meant to be passed back to the
+ * other methods, which always operate on the whole tree and ignore their r
+ * parameter.
+ * 
+ * @author Bazillah Zargar
+ */
+public class ArrayBinarySearchTree implements BinarySearchTreeADT {
+
+	private static final int NIL = 0; // index of the leaf
+	static final int NODE_BYTES = 8 + 4 + 3 * 4 + 1; // bytes taken in the arrays by each node: key, color,
+	                                                 // links and height
+	private static final int DEFAULT_CAPACITY = 16; // initial number of nodes
+	private static final BinaryNode EMPTY = new BinaryNode(); // root of an empty tree
+
+	private long[] keys; // packed key of each node
+	private int[] colors; // color of each node
+	private int[] left; // left child of each node, or next free node
+	private int[] right; // right child of each node
+	private int[] parent; // parent of each node
+	private byte[] heights; // height of the subtree rooted at each node
+	private int root; // index of the root
+	private int size; // number of pixels stored in the tree
+	private int next; // first index that has never been used
+	private int free; // first node of the free list
+	private BinaryNode rootNode; // detached copy of the root, null if stale
+
+	/**
+	 * Constructor that creates an empty tree.
+	 * 
+	 */
+	public ArrayBinarySearchTree() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor that creates an empty tree with room for the given number of
+	 * pixels. The arrays grow if more pixels are inserted.
+	 * 
+	 * @param capacity is the expected number of pixels
+	 */
+	public ArrayBinarySearchTree(int capacity) {
+		int length = Math.max(capacity, 1) + 1;
+		this.keys = new long[length];
+		this.colors = new int[length];
+		this.left = new int[length];
+		this.right = new int[length];
+		this.parent = new int[length];
+		this.heights = new byte[length];
+		this.root = NIL;
+		this.size = 0;
+		this.next = 1;
+		this.free = NIL;
+	}
+
+	/**
+	 * Returns the number of pixels stored in the tree.
+	 * 
+	 * @return number of pixels
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns a detached node holding the pixel at the root of the tree, or a leaf
+	 * node if the tree is empty.
+	 * 
+	 * @return root
+	 */
+	public BinaryNode getRoot() {
+		if (this.root == NIL) {
+			return EMPTY;
+		}
+		if (this.rootNode == null) {
+			this.rootNode = new BinaryNode(pixel(this.root), EMPTY, EMPTY, null);
+		}
+		return this.rootNode;
+	}
+
+	/**
+	 * Returns Pixel storing the given key.
+	 * 
+	 * @param r   is ignored
+	 * @param key is the key of the pixel
+	 * @return pixel storing the given key if the key is stored in in the tree,
+	 *         returns null otherwise
+	 */
+	public Pixel get(BinaryNode r, Location key) {
+		return pixel(find(key.key()));
+	}
+
+	/**
+	 * Returns Pixel storing the key (x, y).
+	 * 
+	 * @param r is ignored
+	 * @param x is the x coordinate of the key
+	 * @param y is the y coordinate of the key
+	 * @return pixel storing the given key if the key is stored in in the tree,
+	 *         returns null otherwise
+	 */
+	public Pixel get(BinaryNode r, int x, int y) {
+		return pixel(find(Location.key(x, y)));
+	}
+
+	/**
+	 * Returns true if the tree stores a pixel with key (x, y). No objects are
+	 * allocated.
+	 * 
+	 * @param r is ignored
+	 * @param x is the x coordinate of the key
+	 * @param y is the y coordinate of the key
+	 * @return true if the key is stored in the tree and false otherwise
+	 */
+	public boolean contains(BinaryNode r, int x, int y) {
+		return find(Location.key(x, y)) != NIL;
+	}
+
+	/**
+	 * Inserts the given data in the tree if no data item with the same key is
+	 * already there. If a node already stores the same key, the algorithm throws a
+	 * DuplicatedKeyException
+	 * 
+	 * @param r    is ignored
+	 * @param data is the Pixel to be inserted into the tree
+	 * 
+	 */
+	public void put(BinaryNode r, Pixel data) throws DuplicatedKeyException {
+		if (insert(data.getLocation().key(), data.getColor()) == false) {
+			throw new DuplicatedKeyException("A node in the BST already stores the same key");
+		}
+	}
+
+	/**
+	 * Inserts a pixel with key (x, y) and the given color in the tree if no data
+	 * item with the same key is already there. If a node already stores the same
+	 * key, the algorithm throws a DuplicatedKeyException
+	 * 
+	 * @param r     is ignored
+	 * @param x     is the x coordinate of the key
+	 * @param y     is the y coordinate of the key
+	 * @param color is the color of the pixel
+	 * 
+	 */
+	public void put(BinaryNode r, int x, int y, int color) throws DuplicatedKeyException {
+		if (insert(Location.key(x, y), color) == false) {
+			throw new DuplicatedKeyException("A node in the BST already stores the same key");
+		}
+	}
+
+	/**
+	 * Replaces the contents of the tree by the first n pixels with the given
+	 * packed keys (see Location.key()) and colors. The keys must be in increasing
+	 * order. The tree is built perfectly balanced in linear time, and node i + 1
+	 * stores the i-th smallest key, so an in-order walk reads the arrays
+	 * sequentially. Throws a DuplicatedKeyException if two consecutive keys are
+	 * equal.
+	 * 
+	 * @param keys   is the array of packed keys, in increasing order
+	 * @param colors is the array of colors
+	 * @param n      is the number of pixels
+	 * 
+	 */
+	public void build(long[] keys, int[] colors, int n) throws DuplicatedKeyException {
+		BinarySearchTree.checkSorted(keys, n);
+		if (this.keys.length < n + 1) {
+			this.keys = new long[n + 1];
+			this.colors = new int[n + 1];
+			this.left = new int[n + 1];
+			this.right = new int[n + 1];
+			this.parent = new int[n + 1];
+			this.heights = new byte[n + 1];
+		}
+		System.arraycopy(keys, 0, this.keys, 1, n);
+		System.arraycopy(colors, 0, this.colors, 1, n);
+		this.size = n;
+		this.next = n + 1;
+		this.free = NIL;
+		this.rootNode = null;
+		this.root = buildHelper(1, n, NIL);
+	}
+
+	/**
+	 * Helper method. Links the nodes first to last into a perfectly balanced tree
+	 * and returns its root.
+	 * 
+	 * @param first is the index of the first node
+	 * @param last  is the index of the last node
+	 * @param up    is the parent of the root of the new tree
+	 * @return the root of the new tree
+	 */
+	private int buildHelper(int first, int last, int up) {
+		if (first > last) {
+			return NIL;
+		}
+		int middle = (first + last) >>> 1;
+		this.parent[middle] = up;
+		this.left[middle] = buildHelper(first, middle - 1, middle);
+		this.right[middle] = buildHelper(middle + 1, last, middle);
+		updateHeight(middle);
+		return middle;
+	}
+
+	/**
+	 * Removes the data item with the given key, if the key is stored in the tree.
+	 * Throws an InexistentKeyException otherwise. The node is put in the free list.
+	 * 
+	 * @param r   is ignored
+	 * @param key is the key of the node to be removed from the tree
+	 * 
+	 */
+	public void remove(BinaryNode r, Location key) throws InexistentKeyException {
+		int node = find(key.key());
+		if (node == NIL) {
+			throw new InexistentKeyException("A data item with this key is not stored in the BST");
+		}
+		if ((this.left[node] != NIL) && (this.right[node] != NIL)) {
+			// Replace the data by that of the successor, which has no left child, and
+			// unlink the successor instead
+			int smallest = smallestHelper(this.right[node]);
+			this.keys[node] = this.keys[smallest];
+			this.colors[node] = this.colors[smallest];
+			node = smallest;
+		}
+		int up = this.parent[node];
+		replaceChild(up, node, (this.left[node] != NIL) ? this.left[node] : this.right[node]);
+		this.left[node] = this.free;
+		this.free = node;
+		this.size--;
+		this.rootNode = null;
+		rebalance(up);
+	}
+
+	/**
+	 * Returns the pixel with the smallest key larger than the given one.
+	 * 
+	 * @param r   is ignored
+	 * @param key is the key of who's successor is being searched for
+	 * @return the pixel with the smallest key larger than the given one or null if
+	 *         the given key has no successor
+	 * 
+	 */
+	public Pixel successor(BinaryNode r, Location key) {
+		return pixel(successorHelper(key.key()));
+	}
+
+	/**
+	 * Returns the pixel with the smallest key larger than (x, y).
+	 * 
+	 * @param r is ignored
+	 * @param x is the x coordinate of the key
+	 * @param y is the y coordinate of the key
+	 * @return the pixel with the smallest key larger than the given one or null if
+	 *         the given key has no successor
+	 * 
+	 */
+	public Pixel successor(BinaryNode r, int x, int y) {
+		return pixel(successorHelper(Location.key(x, y)));
+	}
+
+	/**
+	 * Returns the pixel with the largest key smaller than the given one.
+	 * 
+	 * @param r   is ignored
+	 * @param key is the key of who's predecessor is being searched for
+	 * @return the pixel with the largest key smaller than the given one or null if
+	 *         the given key has no predecessor
+	 * 
+	 */
+	public Pixel predecessor(BinaryNode r, Location key) {
+		return pixel(predecessorHelper(key.key()));
+	}
+
+	/**
+	 * Returns the pixel with the largest key smaller than (x, y).
+	 * 
+	 * @param r is ignored
+	 * @param x is the x coordinate of the key
+	 * @param y is the y coordinate of the key
+	 * @return the pixel with the largest key smaller than the given one or null if
+	 *         the given key has no predecessor
+	 * 
+	 */
+	public Pixel predecessor(BinaryNode r, int x, int y) {
+		return pixel(predecessorHelper(Location.key(x, y)));
+	}
+
+	/**
+	 * Returns the pixel with the smallest key. Throws an EmptyTreeException if the
+	 * tree does not contain any data.
+	 * 
+	 * @param r is ignored
+	 * @return the pixel with the smallest key
+	 * 
+	 */
+	public Pixel smallest(BinaryNode r) throws EmptyTreeException {
+		if (this.root == NIL) {
+			throw new EmptyTreeException("The BST is empty");
+		}
+		return pixel(smallestHelper(this.root));
+	}
+
+	/**
+	 * Returns the pixel with the largest key. Throws an EmptyTreeException if the
+	 * tree does not contain any data.
+	 * 
+	 * @param r is ignored
+	 * @return the pixel with the largest key
+	 * 
+	 */
+	public Pixel largest(BinaryNode r) throws EmptyTreeException {
+		if (this.root == NIL) {
+			throw new EmptyTreeException("The BST is empty");
+		}
+		int node = this.root;
+		while (this.right[node] != NIL) {
+			node = this.right[node];
+		}
+		return pixel(node);
+	}
+
+	/**
+	 * Returns a cursor that walks the pixels of the tree in increasing key order.
+	 * The cursor follows the parent links of the nodes, so each step takes
+	 * constant amortized time, and it allocates nothing while walking.
+	 * 
+	 * @return cursor positioned before the smallest pixel
+	 */
+	public PixelCursor cursor() {
+		return new ArrayCursor(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns a cursor that walks, in increasing key order, the pixels with
+	 * coordinates xMin <= x <= xMax and yMin <= y <= yMax. Since keys are in
+	 * column order, these pixels lie in the key range from (xMin, yMin) to (xMax,
+	 * yMax); within it, the cursor jumps over the part of each column outside
+	 * [yMin, yMax] with a search from the root instead of visiting it.
+	 * 
+	 * @param xMin is the smallest x coordinate
+	 * @param yMin is the smallest y coordinate
+	 * @param xMax is the largest x coordinate
+	 * @param yMax is the largest y coordinate
+	 * @return cursor positioned before the first pixel in the rectangle
+	 */
+	public PixelCursor range(int xMin, int yMin, int xMax, int yMax) {
+		return new ArrayCursor(xMin, yMin, xMax, yMax);
+	}
+
+	/**
+	 * Returns an iterator over the pixels of the tree in increasing key order. A
+	 * new Pixel object is created for every pixel visited.
+	 * 
+	 * @return iterator positioned before the smallest pixel
+	 */
+	public Iterator<Pixel> iterator() {
+		return new ArrayCursor(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Walks in order the nodes of the tree whose keys lie in a rectangle.
+	 */
+	private class ArrayCursor implements PixelCursor, Iterator<Pixel> {
+
+		private int current; // node visited last
+		private int next; // node to visit next, or NIL at the end
+		private long last; // largest key in the rectangle
+		private int yMin; // smallest y coordinate in the rectangle
+		private int yMax; // largest y coordinate in the rectangle
+
+		/**
+		 * Constructor that positions the cursor before the first node in the given
+		 * rectangle.
+		 * 
+		 * @param xMin is the smallest x coordinate
+		 * @param yMin is the smallest y coordinate
+		 * @param xMax is the largest x coordinate
+		 * @param yMax is the largest y coordinate
+		 */
+		ArrayCursor(int xMin, int yMin, int xMax, int yMax) {
+			this.current = NIL;
+			this.last = Location.key(xMax, yMax);
+			this.yMin = yMin;
+			this.yMax = yMax;
+			if ((xMin > xMax) || (yMin > yMax)) {
+				this.next = NIL;
+			} else {
+				this.next = ceilingHelper(Location.key(xMin, yMin));
+				skip();
+			}
+		}
+
+		public boolean hasNext() {
+			return this.next != NIL;
+		}
+
+		public long nextKey() {
+			advance();
+			return keys[this.current];
+		}
+
+		public int color() {
+			return colors[this.current];
+		}
+
+		public Pixel next() {
+			advance();
+			return pixel(this.current);
+		}
+
+		/**
+		 * Moves to the in-order successor of the current node: the smallest node of
+		 * its right subtree or, if that is empty, the first ancestor reached from a
+		 * left child.
+		 * 
+		 */
+		private void advance() {
+			if (this.next == NIL) {
+				throw new NoSuchElementException("No more pixels in the BST");
+			}
+			this.current = this.next;
+			int node = this.current;
+			if (right[node] != NIL) {
+				this.next = smallestHelper(right[node]);
+			} else {
+				int up = parent[node];
+				while ((up != NIL) && (right[up] == node)) {
+					node = up;
+					up = parent[node];
+				}
+				this.next = up;
+			}
+			skip();
+		}
+
+		/**
+		 * Moves the next node forward to the first node inside the rectangle, or to
+		 * NIL if there is none.
+		 * 
+		 */
+		private void skip() {
+			while (this.next != NIL) {
+				long key = keys[this.next];
+				int x = Location.keyX(key);
+				int y = Location.keyY(key);
+				if (key > this.last) {
+					this.next = NIL;
+				} else if (y < this.yMin) {
+					this.next = ceilingHelper(Location.key(x, this.yMin));
+				} else if (y > this.yMax) {
+					this.next = (x == Integer.MAX_VALUE) ? NIL : ceilingHelper(Location.key(x + 1, this.yMin));
+				} else {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Helper method. Returns a new Pixel with the data of the given node, or null
+	 * if the node is the leaf.
+	 * 
+	 * @param node is the index of the node
+	 * @return pixel stored in the node
+	 */
+	private Pixel pixel(int node) {
+		if (node == NIL) {
+			return null;
+		}
+		long key = this.keys[node];
+		return new Pixel(new Location(Location.keyX(key), Location.keyY(key)), this.colors[node]);
+	}
+
+	/**
+	 * Helper method. Returns the node storing the given packed key, or the leaf if
+	 * the key is not stored in the tree.
+	 * 
+	 * @param key is the packed key
+	 * @return index of the node
+	 */
+	private int find(long key) {
+		int node = this.root;
+		while (node != NIL) {
+			long nodeKey = this.keys[node];
+			if (key == nodeKey) {
+				return node;
+			}
+			node = (key < nodeKey) ? this.left[node] : this.right[node];
+		}
+		return NIL;
+	}
+
+	/**
+	 * Helper method. Returns the node with the smallest key larger than the given
+	 * packed key, or the leaf if there is none.
+	 * 
+	 * @param key is the packed key
+	 * @return index of the node
+	 */
+	private int successorHelper(long key) {
+		int node = this.root;
+		int found = NIL;
+		while (node != NIL) {
+			if (this.keys[node] > key) {
+				found = node;
+				node = this.left[node];
+			} else {
+				node = this.right[node];
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Helper method. Returns the node with the smallest key larger than or equal
+	 * to the given packed key, or the leaf if there is none.
+	 * 
+	 * @param key is the packed key
+	 * @return index of the node
+	 */
+	private int ceilingHelper(long key) {
+		int node = this.root;
+		int found = NIL;
+		while (node != NIL) {
+			if (this.keys[node] >= key) {
+				found = node;
+				node = this.left[node];
+			} else {
+				node = this.right[node];
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Helper method. Returns the node with the largest key smaller than the given
+	 * packed key, or the leaf if there is none.
+	 * 
+	 * @param key is the packed key
+	 * @return index of the node
+	 */
+	private int predecessorHelper(long key) {
+		int node = this.root;
+		int found = NIL;
+		while (node != NIL) {
+			if (this.keys[node] < key) {
+				found = node;
+				node = this.right[node];
+			} else {
+				node = this.left[node];
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Helper method. Returns the node with the smallest key in the subtree rooted
+	 * at the given node.
+	 * 
+	 * @param r is the root of the subtree, which is not the leaf
+	 * @return index of the node
+	 */
+	private int smallestHelper(int r) {
+		int node = r;
+		while (this.left[node] != NIL) {
+			node = this.left[node];
+		}
+		return node;
+	}
+
+	/**
+	 * Helper method. Inserts the given key and color if the key is not already in
+	 * the tree.
+	 * 
+	 * @param key   is the packed key
+	 * @param color is the color of the pixel
+	 * @return true if the pixel was inserted and false if the key was already
+	 *         stored in the tree
+	 */
+	private boolean insert(long key, int color) {
+		if (this.root == NIL) {
+			this.root = allocate(key, color, NIL);
+			return true;
+		}
+		int node = this.root;
+		while (true) {
+			long nodeKey = this.keys[node];
+			if (key == nodeKey) {
+				return false;
+			}
+			int child = (key < nodeKey) ? this.left[node] : this.right[node];
+			if (child == NIL) {
+				int newNode = allocate(key, color, node);
+				if (key < nodeKey) {
+					this.left[node] = newNode;
+				} else {
+					this.right[node] = newNode;
+				}
+				rebalance(node);
+				return true;
+			}
+			node = child;
+		}
+	}
+
+	/**
+	 * Helper method. Takes a node from the free list, or a new one if the free
+	 * list is empty, and stores the given data in it.
+	 * 
+	 * @param key    is the packed key
+	 * @param color  is the color of the pixel
+	 * @param parent is the parent of the new node
+	 * @return index of the node
+	 */
+	private int allocate(long key, int color, int parent) {
+		int node;
+		if (this.free != NIL) {
+			node = this.free;
+			this.free = this.left[node];
+		} else {
+			if (this.next == this.keys.length) {
+				grow();
+			}
+			node = this.next++;
+		}
+		this.keys[node] = key;
+		this.colors[node] = color;
+		this.left[node] = NIL;
+		this.right[node] = NIL;
+		this.parent[node] = parent;
+		this.heights[node] = 1;
+		this.size++;
+		this.rootNode = null;
+		return node;
+	}
+
+	/**
+	 * Helper method. Doubles the length of the arrays.
+	 * 
+	 */
+	private void grow() {
+		int length = this.keys.length * 2;
+		this.keys = Arrays.copyOf(this.keys, length);
+		this.colors = Arrays.copyOf(this.colors, length);
+		this.left = Arrays.copyOf(this.left, length);
+		this.right = Arrays.copyOf(this.right, length);
+		this.parent = Arrays.copyOf(this.parent, length);
+		this.heights = Arrays.copyOf(this.heights, length);
+	}
+
+	/**
+	 * Helper method. Makes newChild take the place of oldChild below the given
+	 * parent. If parent is the leaf, newChild becomes the root of the tree.
+	 * 
+	 * @param up       is the parent of oldChild
+	 * @param oldChild is the node being replaced
+	 * @param newChild is the node taking its place
+	 */
+	private void replaceChild(int up, int oldChild, int newChild) {
+		if (newChild != NIL) {
+			this.parent[newChild] = up;
+		}
+		if (up == NIL) {
+			this.root = newChild;
+		} else if (this.left[up] == oldChild) {
+			this.left[up] = newChild;
+		} else {
+			this.right[up] = newChild;
+		}
+	}
+
+	/**
+	 * Helper method. Recomputes the height of the given node from the heights of
+	 * its children.
+	 * 
+	 * @param node is the node whose height is updated
+	 */
+	private void updateHeight(int node) {
+		this.heights[node] = (byte) (1 + Math.max(this.heights[this.left[node]], this.heights[this.right[node]]));
+	}
+
+	/**
+	 * Helper method. Rotates the subtree rooted at r to the left and returns the
+	 * new root of the subtree.
+	 * 
+	 * @param r is the root of the subtree
+	 * @return the new root of the subtree
+	 */
+	private int rotateLeft(int r) {
+		int pivot = this.right[r];
+		this.right[r] = this.left[pivot];
+		if (this.left[pivot] != NIL) {
+			this.parent[this.left[pivot]] = r;
+		}
+		replaceChild(this.parent[r], r, pivot);
+		this.left[pivot] = r;
+		this.parent[r] = pivot;
+		updateHeight(r);
+		updateHeight(pivot);
+		return pivot;
+	}
+
+	/**
+	 * Helper method. Rotates the subtree rooted at r to the right and returns the
+	 * new root of the subtree.
+	 * 
+	 * @param r is the root of the subtree
+	 * @return the new root of the subtree
+	 */
+	private int rotateRight(int r) {
+		int pivot = this.left[r];
+		this.left[r] = this.right[pivot];
+		if (this.right[pivot] != NIL) {
+			this.parent[this.right[pivot]] = r;
+		}
+		replaceChild(this.parent[r], r, pivot);
+		this.right[pivot] = r;
+		this.parent[r] = pivot;
+		updateHeight(r);
+		updateHeight(pivot);
+		return pivot;
+	}
+
+	/**
+	 * Helper method. Walks from the given node up to the root, updating heights
+	 * and performing the AVL rotations needed to restore the balance of every
+	 * node on the path.
+	 * 
+	 * @param r is the lowest node whose subtree changed, or the leaf
+	 */
+	private void rebalance(int r) {
+		int node = r;
+		while (node != NIL) {
+			updateHeight(node);
+			int balance = this.heights[this.left[node]] - this.heights[this.right[node]];
+			if (balance > 1) {
+				int child = this.left[node];
+				if (this.heights[this.left[child]] < this.heights[this.right[child]]) {
+					rotateLeft(child);
+				}
+				node = rotateRight(node);
+			} else if (balance < -1) {
+				int child = this.right[node];
+				if (this.heights[this.right[child]] < this.heights[this.left[child]]) {
+					rotateRight(child);
+				}
+				node = rotateLeft(node);
+			}
+			node = this.parent[node];
+		}
+		this.rootNode = null;
+	}
+}
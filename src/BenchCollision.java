@@ -0,0 +1,100 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/*
+ * Measures the cost of testing moving sprites against the fixed ones with the
+ * portable mask loop, with the kernel selected by PixelMask, and with that
+ * kernel behind the coarse levels of the masks. Run it from the
+ * directory with the images, with --add-modules jdk.incubator.vector to measure
+ * the vector kernel.
+ */
+public class BenchCollision {
+
+	private static final int THRESHOLD = 225; // transparent pixels have RGB values >= threshold
+	private static final int ROUNDS = 20; // number of timed passes over all the tests
+
+	public static void main(String[] args) throws IOException, DuplicatedKeyException {
+		String[] movers = { "p.jpg", "g.jpg", "ship.jpg", "darth.jpg" };
+		String[] walls = { "vs2.jpg", "s2.jpg", "two.jpg", "zero.jpg" };
+		PixelMask[] moverMasks = new PixelMask[movers.length];
+		PixelMask[] wallMasks = new PixelMask[walls.length];
+		for (int i = 0; i < movers.length; ++i)
+			moverMasks[i] = loadFigure(movers[i]).getMask();
+		for (int i = 0; i < walls.length; ++i)
+			wallMasks[i] = loadFigure(walls[i]).getMask();
+
+		// Every relative offset at which the enclosing rectangles overlap
+		int tests = 0;
+		for (PixelMask wall : wallMasks)
+			for (PixelMask mover : moverMasks)
+				tests += (wall.getWidth() + mover.getWidth() + 1) * (wall.getHeight() + mover.getHeight() + 1);
+
+		String[] modes = { "scalar", PixelMask.kernelName(), PixelMask.kernelName() + " with coarse levels" };
+		long[] hits = new long[modes.length];
+		long[] times = new long[modes.length];
+		for (int mode = 0; mode < modes.length; ++mode)
+			times[mode] = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; ++round)
+			for (int mode = 0; mode < modes.length; ++mode) {
+				long start = System.nanoTime();
+				hits[mode] = run(wallMasks, moverMasks, mode);
+				times[mode] = Math.min(times[mode], System.nanoTime() - start);
+			}
+
+		System.out.println("Overlap tests per pass: " + tests + " (" + hits[0] + " collisions)");
+		for (int mode = 0; mode < modes.length; ++mode) {
+			System.out.printf("%s: %.1f ns per test%n", modes[mode], (double) times[mode] / tests);
+			if (hits[mode] != hits[0])
+				System.out.println("  disagrees with scalar: " + hits[mode] + " collisions");
+		}
+	}
+
+	/* =================================================================== */
+	private static long run(PixelMask[] walls, PixelMask[] movers, int mode) {
+		/* =================================================================== */
+		/* Test every mover against every wall at every overlapping offset */
+		long hits = 0;
+		for (PixelMask wall : walls)
+			for (PixelMask mover : movers)
+				for (int dx = -mover.getWidth(); dx <= wall.getWidth(); ++dx)
+					for (int dy = -mover.getHeight(); dy <= wall.getHeight(); ++dy) {
+						boolean hit;
+						if (mode == 0)
+							hit = wall.intersectsScalar(mover, dx, dy, 0, wall.getHeight() - 1);
+						else if (mode == 1)
+							hit = wall.intersectsFlat(mover, dx, dy);
+						else
+							hit = wall.intersects(mover, dx, dy);
+						if (hit)
+							++hits;
+					}
+		return hits;
+	}
+
+	/* =================================================================== */
+	private static GraphicalFigure loadFigure(String name) throws IOException, DuplicatedKeyException {
+		/* =================================================================== */
+		/* Read the figure from the image file, dropping its transparent pixels */
+		BufferedImage im = ImageIO.read(new File(name));
+		int width = im.getWidth(), height = im.getHeight();
+		long[] keys = new long[width * height];
+		int[] colors = new int[width * height];
+		int n = 0;
+		for (int x = 0; x < width; ++x)
+			for (int y = 0; y < height; ++y) {
+				int rgb = im.getRGB(x, y);
+				if (((rgb & 0xff) < THRESHOLD) || (((rgb & 0xff00) >> 8) < THRESHOLD)
+						|| (((rgb & 0xff0000) >> 16) < THRESHOLD)) {
+					keys[n] = Location.key(x, y);
+					colors[n++] = rgb;
+				}
+			}
+		GraphicalFigure fig = new GraphicalFigure(0, width, height, "fixed", new Location(0, 0),
+				new ArrayBinarySearchTree(n));
+		fig.setPixels(keys, colors, n);
+		return fig;
+	}
+}
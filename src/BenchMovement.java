@@ -0,0 +1,183 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/*
+ * Measures the time and the bytes allocated by ticks of the game in which
+ * hundreds of computer figures each make one move, with every broadphase,
+ * moving the figures one by one and in one batch as Show does. The figures are
+ * not drawn. The separation tracker is given room for every pair of figures
+ * up front, and the ticks are warmed up until a round of them allocates
+ * nothing, so the bytes allocated while the structures grow to their final
+ * sizes are printed apart from those of the ticks measured. These should
+ * allocate nothing but, now and then, a bucket of the broadphase that holds
+ * more figures than ever before. Run it from the directory with the images;
+ * the number of moving figures can be given as argument.
+ */
+public class BenchMovement {
+
+	private static final int THRESHOLD = 225; // transparent pixels have RGB values >= threshold
+	private static final int SIZE = 2000; // width and height of the area where figures move
+	private static final int WALLS = 150; // number of fixed figures
+	private static final int WARMUP = 300; // ticks run in each round of the warm-up
+	private static final int MAX_WARMUP = 12000; // most ticks run before measuring
+	private static final int TICKS = 300; // ticks measured
+	private static final int STEP = 4; // length in pixels of each move
+
+	private static final int[] DX = { -STEP, STEP, 0, 0 }; // moves in each direction
+	private static final int[] DY = { 0, 0, -STEP, STEP };
+
+	public static void main(String[] args) throws IOException, DuplicatedKeyException {
+		int movers = (args.length > 0) ? Integer.parseInt(args[0]) : 400;
+		String[] moverFiles = { "p.jpg", "g.jpg", "g2.jpg", "ship.jpg", "darth.jpg" };
+		String[] wallFiles = { "vs2.jpg", "s2.jpg", "two.jpg", "zero.jpg" };
+		BufferedImage[] moverImages = new BufferedImage[moverFiles.length];
+		BufferedImage[] wallImages = new BufferedImage[wallFiles.length];
+		PixelRuns[] moverRuns = new PixelRuns[moverFiles.length];
+		PixelRuns[] wallRuns = new PixelRuns[wallFiles.length];
+		for (int i = 0; i < moverFiles.length; ++i) {
+			moverImages[i] = ImageIO.read(new File(moverFiles[i]));
+			moverRuns[i] = runsOf(moverImages[i]);
+		}
+		for (int i = 0; i < wallFiles.length; ++i) {
+			wallImages[i] = ImageIO.read(new File(wallFiles[i]));
+			wallRuns[i] = runsOf(wallImages[i]);
+		}
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long self = Thread.currentThread().getId();
+		String[] phases = { "grid", "sap", "tree" };
+		System.out.println(movers + " moving figures, " + WALLS + " fixed figures, " + TICKS + " ticks measured");
+		for (int run = 0; run < 2 * phases.length; ++run) {
+			String name = phases[run / 2];
+			boolean batch = (run % 2 == 1);
+			// The same world for every broadphase
+			Random random = new Random(1);
+			int numFigures = WALLS + movers;
+			GraphicalFigure[] figs = new GraphicalFigure[numFigures];
+			for (int i = 0; i < numFigures; ++i) {
+				int kind = (i < WALLS) ? i % wallFiles.length : i % moverFiles.length;
+				BufferedImage im = (i < WALLS) ? wallImages[kind] : moverImages[kind];
+				figs[i] = new GraphicalFigure(i, im.getWidth(), im.getHeight(), (i < WALLS) ? "fixed" : "computer",
+						new Location(0, 0));
+				figs[i].setRuns((i < WALLS) ? wallRuns[kind] : moverRuns[kind]);
+				do
+					figs[i].setOffset(random.nextInt(SIZE - im.getWidth()), random.nextInt(SIZE - im.getHeight()));
+				while (overlaps(figs, i));
+			}
+			World world = new World(SIZE, SIZE, figs, numFigures, World.makeBroadphase(name));
+			world.getSeparations().reserve((int) Math.min((long) numFigures * (numFigures - 1) / 2, Integer.MAX_VALUE));
+			MoveFigure mover = world.getMover();
+			int[] dir = new int[numFigures];
+			for (int i = WALLS; i < numFigures; ++i)
+				dir[i] = random.nextInt(4);
+			Batch moves = batch ? new Batch(numFigures) : null;
+
+			long before = threads.getThreadAllocatedBytes(self);
+			long bracket = threads.getThreadAllocatedBytes(self) - before; // bytes allocated by the measure itself
+			// Warm up in rounds until a round allocates nothing, the first one always
+			// being run to compile the code
+			long grown = 0, round = 0;
+			int warmup = 0;
+			do {
+				before = threads.getThreadAllocatedBytes(self);
+				for (int t = 0; t < WARMUP; ++t)
+					tick(mover, figs, numFigures, dir, random, moves);
+				round = threads.getThreadAllocatedBytes(self) - before - bracket;
+				warmup += WARMUP;
+				if (warmup > WARMUP)
+					grown += round;
+			} while ((round > 0) && (warmup < MAX_WARMUP));
+			before = threads.getThreadAllocatedBytes(self);
+			long start = System.nanoTime();
+			long blocked = 0;
+			for (int t = 0; t < TICKS; ++t)
+				blocked += tick(mover, figs, numFigures, dir, random, moves);
+			long time = System.nanoTime() - start;
+			long bytes = threads.getThreadAllocatedBytes(self) - before - bracket;
+			System.out.printf("%s%s: %.1f us per tick, %.1f bytes per tick, %d moves blocked%n", name,
+					batch ? " in batches" : "", time / 1000.0 / TICKS, (double) bytes / TICKS, blocked);
+			System.out.printf("  warmed up for %d ticks, %d bytes allocated after the first %d while growing%n",
+					warmup, grown, WARMUP);
+		}
+	}
+
+	/* =================================================================== */
+	private static int tick(MoveFigure mover, GraphicalFigure[] figs, int numFigures, int[] dir, Random random,
+			Batch moves) {
+		/* =================================================================== */
+		/*
+		 * Move every computer figure one step in its direction, one by one or in
+		 * the given batch, choosing a new direction for those that were stopped,
+		 * and return how many were stopped
+		 */
+		int blocked = 0;
+		if (moves != null) {
+			for (int i = WALLS; i < numFigures; ++i) {
+				moves.dx[i - WALLS] = DX[dir[i]];
+				moves.dy[i - WALLS] = DY[dir[i]];
+			}
+			mover.moveAll(figs, numFigures, moves.movers, numFigures - WALLS, moves.dx, moves.dy, moves.codes);
+		}
+		for (int i = WALLS; i < numFigures; ++i) {
+			int code = (moves != null) ? moves.codes[i - WALLS] : mover.move(figs, numFigures, i, DX[dir[i]], DY[dir[i]]);
+			if (code != -2) {
+				dir[i] = (dir[i] + 1 + random.nextInt(3)) % 4;
+				++blocked;
+			}
+		}
+		return blocked;
+	}
+
+	/* =================================================================== */
+	private static boolean overlaps(GraphicalFigure[] figs, int i) {
+		/* =================================================================== */
+		/* Check whether figure i overlaps one of the figures placed before it */
+		for (int j = 0; j < i; ++j)
+			if (figs[i].intersects(figs[j]))
+				return true;
+		return false;
+	}
+
+	/* =================================================================== */
+	private static PixelRuns runsOf(BufferedImage im) throws DuplicatedKeyException {
+		/* =================================================================== */
+		/* Store the pixels of the image as runs, dropping its transparent pixels */
+		int width = im.getWidth(), height = im.getHeight();
+		long[] keys = new long[width * height];
+		int[] colors = new int[width * height];
+		int n = 0;
+		for (int x = 0; x < width; ++x)
+			for (int y = 0; y < height; ++y) {
+				int rgb = im.getRGB(x, y);
+				if (((rgb & 0xff) < THRESHOLD) || (((rgb & 0xff00) >> 8) < THRESHOLD)
+						|| (((rgb & 0xff0000) >> 16) < THRESHOLD)) {
+					keys[n] = Location.key(x, y);
+					colors[n++] = rgb;
+				}
+			}
+		return new PixelRuns(keys, colors, n);
+	}
+
+	/* =================================================================== */
+	private static class Batch {
+		/* =================================================================== */
+		/* Arrays of the moves of the computer figures, reused for every tick */
+
+		private int[] movers, dx, dy, codes;
+
+		Batch(int numFigures) {
+			movers = new int[numFigures - WALLS];
+			dx = new int[numFigures - WALLS];
+			dy = new int[numFigures - WALLS];
+			codes = new int[numFigures - WALLS];
+			for (int k = 0; k < movers.length; ++k)
+				movers[k] = WALLS + k;
+		}
+	}
+}
@@ -7,13 +7,16 @@
 public class BinaryNode {
 
 	private Pixel data; // Pixel object
+	private long key; // packed key of the location of data, see Location.key()
 	private BinaryNode left; // left child
 	private BinaryNode right; // right child
 	private BinaryNode parent; // parent node
+	private int height; // height of the subtree rooted at this node, 0 for a leaf
 
 	/**
 	 * Constructor that stores the pixel in the node and sets left child, right
-	 * child, and parent to the specified values.
+	 * child, and parent to the specified values. The pixel may be null, in
+	 * which case the key of the node is 0.
 	 * 
 	 * @param value  is the pixel object
 	 * @param left   is the left node
@@ -22,9 +25,11 @@ public class BinaryNode {
 	 */
 	public BinaryNode(Pixel value, BinaryNode left, BinaryNode right, BinaryNode parent) {
 		this.data = value;
+		this.key = (value == null) ? 0 : value.getLocation().key();
 		this.left = left;
 		this.right = right;
 		this.parent = parent;
+		this.height = 1;
 	}
 
 	/**
@@ -37,6 +42,7 @@ public class BinaryNode {
 		this.left = null;
 		this.right = null;
 		this.parent = null;
+		this.height = 0;
 	}
 
 	/**
@@ -57,6 +63,25 @@ public class BinaryNode {
 		this.parent = parent;
 	}
 
+	/**
+	 * Returns the height of the subtree rooted at this node. A leaf node has
+	 * height 0.
+	 * 
+	 * @return height
+	 */
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * Sets the height of the subtree rooted at this node to the specified value.
+	 * 
+	 * @param height is the specified value of the height.
+	 */
+	public void setHeight(int height) {
+		this.height = height;
+	}
+
 	/**
 	 * Sets the left child of this node to the specified value.
 	 * 
@@ -82,6 +107,18 @@ public class BinaryNode {
 	 */
 	public void setData(Pixel value) {
 		this.data = value;
+		this.key = (value == null) ? 0 : value.getLocation().key();
+	}
+
+	/**
+	 * Returns the packed key of the location of the Pixel stored in this node, so
+	 * that searches can compare keys without going through the Location object.
+	 * The key of a leaf node is 0.
+	 * 
+	 * @return packed key
+	 */
+	public long getKey() {
+		return this.key;
 	}
 
 	/**
@@ -1,20 +1,53 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
 /**
  * Implements an ordered dictionary using a binary search tree. Each node of the
  * tree stores a Pixel object; the attribute Location of the Pixel is its key.
  * 
+ * The tree can optionally work in self-balancing mode, in which case it is kept
+ * AVL-balanced after every insertion and removal so its height stays
+ * logarithmic whatever the order in which the pixels are inserted.
+ * 
+ * All the leaves of all the trees are the same shared leaf node, so storing n
+ * pixels takes n nodes rather than 3n. The shared leaf is never modified; in
+ * particular its parent is always null.
+ * 
  * @author Bazillah Zargar
  */
 public class BinarySearchTree implements BinarySearchTreeADT {
 
+	private static final BinaryNode LEAF = new BinaryNode(); // shared leaf node
+
 	private BinaryNode root; // root of the binary search tree
+	private boolean balanced; // true if the tree rebalances itself after updates
 
 	/**
 	 * Constructor that creates a tree whose root is a leaf node
 	 * 
 	 */
 	public BinarySearchTree() {
-		BinaryNode newRoot = new BinaryNode();
-		this.root = newRoot;
+		this(false);
+	}
+
+	/**
+	 * Constructor that creates a tree whose root is a leaf node. If balanced is
+	 * true the tree keeps itself AVL-balanced.
+	 * 
+	 * @param balanced is true if the tree must be self-balancing
+	 */
+	public BinarySearchTree(boolean balanced) {
+		this.root = LEAF;
+		this.balanced = balanced;
+	}
+
+	/**
+	 * Returns true if this tree keeps itself balanced after every update.
+	 * 
+	 * @return true if the tree is self-balancing and false otherwise
+	 */
+	public boolean isBalanced() {
+		return this.balanced;
 	}
 
 	/**
@@ -24,29 +57,61 @@ public class BinarySearchTree implements BinarySearchTreeADT {
 	 *         returns null otherwise
 	 */
 	public Pixel get(BinaryNode r, Location key) {
-		BinaryNode nodeFound = getHelper(r, key);
+		BinaryNode nodeFound = getHelper(r, key.key());
 		return nodeFound.getData();
 	}
 
+	/**
+	 * Returns Pixel storing the key (x, y). Unlike get(r, key) it does not need a
+	 * Location object, so probing the tree allocates nothing.
+	 * 
+	 * @param r is the root of the tree
+	 * @param x is the x coordinate of the key
+	 * @param y is the y coordinate of the key
+	 * @return pixel storing the given key if the key is stored in in the tree,
+	 *         returns null otherwise
+	 */
+	public Pixel get(BinaryNode r, int x, int y) {
+		BinaryNode nodeFound = getHelper(r, Location.key(x, y));
+		return nodeFound.getData();
+	}
+
+	/**
+	 * Returns true if the key (x, y) is stored in the tree and false otherwise.
+	 * 
+	 * @param r is the root of the tree
+	 * @param x is the x coordinate of the key
+	 * @param y is the y coordinate of the key
+	 * @return true if the key is stored in the tree and false otherwise
+	 */
+	public boolean contains(BinaryNode r, int x, int y) {
+		return getHelper(r, Location.key(x, y)).isLeaf() == false;
+	}
+
 	/**
 	 * Helper method. Returns the Binary Node which stores the Pixel storing the
-	 * given key.
+	 * given packed key. The search is iterative, so it needs constant stack space
+	 * even if the tree is degenerate.
 	 * 
+	 * @param r   is the root of the tree
+	 * @param key is the packed key, see Location.key()
 	 * @return the Binary Node which stores the Pixel storing the given key if the
-	 *         key is stored in in the tree, returns null otherwise
+	 *         key is stored in in the tree, otherwise the leaf where the key would
+	 *         be inserted
 	 */
-	private BinaryNode getHelper(BinaryNode r, Location key) {
-		if (r.isLeaf() == true) {
-			return r;
-		} else {
-			if (r.getData().getLocation().compareTo(key) == 0) {
-				return r;
-			} else if (key.compareTo(r.getData().getLocation()) == -1) {
-				return getHelper(r.getLeft(), key);
+	private BinaryNode getHelper(BinaryNode r, long key) {
+		BinaryNode node = r;
+		while (node.isLeaf() == false) {
+			long nodeKey = node.getKey();
+			if (key == nodeKey) {
+				return node;
+			} else if (key < nodeKey) {
+				node = node.getLeft();
 			} else {
-				return getHelper(r.getRight(), key);
+				node = node.getRight();
 			}
 		}
+		return node;
 	}
 
 	/**
@@ -59,47 +124,120 @@ public class BinarySearchTree implements BinarySearchTreeADT {
 	 * 
 	 */
 	public void put(BinaryNode r, Pixel data) throws DuplicatedKeyException {
-		Location key = data.getLocation();
-		BinaryNode nodeFound = getHelper(r, key);
-		if (nodeFound.isLeaf() != true) {
+		if (putHelper(r, data) == false) {
 			throw new DuplicatedKeyException("A node in the BST already stores the same key");
-		} else {
-			putHelper(r, data);
 		}
+	}
+
+	/**
+	 * Inserts a pixel with key (x, y) and the given color in the tree if no data
+	 * item with the same key is already there. If a node already stores the same
+	 * key, the algorithm throws a DuplicatedKeyException
+	 * 
+	 * @param r     is the root of the tree
+	 * @param x     is the x coordinate of the key
+	 * @param y     is the y coordinate of the key
+	 * @param color is the color of the pixel
+	 * 
+	 */
+	public void put(BinaryNode r, int x, int y, int color) throws DuplicatedKeyException {
+		put(r, new Pixel(new Location(x, y), color));
+	}
 
+	/**
+	 * Replaces the contents of the tree by the first n pixels with the given
+	 * packed keys (see Location.key()) and colors. The keys must be in increasing
+	 * order. The tree is built perfectly balanced in linear time, without
+	 * searching it once per pixel. Throws a DuplicatedKeyException if two
+	 * consecutive keys are equal.
+	 * 
+	 * @param keys   is the array of packed keys, in increasing order
+	 * @param colors is the array of colors
+	 * @param n      is the number of pixels
+	 * 
+	 */
+	public void build(long[] keys, int[] colors, int n) throws DuplicatedKeyException {
+		checkSorted(keys, n);
+		this.root = buildHelper(keys, colors, 0, n - 1, null);
+	}
+
+	/**
+	 * Helper method. Checks that the first n keys are in strictly increasing
+	 * order.
+	 * 
+	 * @param keys is the array of packed keys
+	 * @param n    is the number of keys
+	 */
+	static void checkSorted(long[] keys, int n) throws DuplicatedKeyException {
+		for (int i = 1; i < n; ++i) {
+			if (keys[i] == keys[i - 1]) {
+				throw new DuplicatedKeyException("A node in the BST already stores the same key");
+			} else if (keys[i] < keys[i - 1]) {
+				throw new IllegalArgumentException("The keys are not in increasing order");
+			}
+		}
+	}
+
+	/**
+	 * Helper method. Builds a perfectly balanced tree with the pixels in positions
+	 * first to last and returns its root. The recursion depth is logarithmic in
+	 * the number of pixels.
+	 * 
+	 * @param keys   is the array of packed keys
+	 * @param colors is the array of colors
+	 * @param first  is the position of the first pixel
+	 * @param last   is the position of the last pixel
+	 * @param parent is the parent of the root of the new tree
+	 * @return the root of the new tree
+	 */
+	private BinaryNode buildHelper(long[] keys, int[] colors, int first, int last, BinaryNode parent) {
+		if (first > last) {
+			return LEAF;
+		}
+		int middle = (first + last) >>> 1;
+		Location p = new Location(Location.keyX(keys[middle]), Location.keyY(keys[middle]));
+		BinaryNode node = new BinaryNode(new Pixel(p, colors[middle]), LEAF, LEAF, parent);
+		node.setLeft(buildHelper(keys, colors, first, middle - 1, node));
+		node.setRight(buildHelper(keys, colors, middle + 1, last, node));
+		updateHeight(node);
+		return node;
 	}
 
 	/**
 	 * Helper Method. Inserts the given data in the tree if no data item with the
-	 * same key is already there.
+	 * same key is already there. The tree is descended only once and without
+	 * recursion.
 	 * 
 	 * @param r    is the root of the tree
 	 * @param data is the Pixel to be inserted into the tree
+	 * @return true if the data was inserted and false if its key was already
+	 *         stored in the tree
 	 * 
 	 */
-	private void putHelper(BinaryNode r, Pixel data) {
-		Location key = data.getLocation();
-		BinaryNode newNode = new BinaryNode(data, new BinaryNode(), new BinaryNode(), r);
+	private boolean putHelper(BinaryNode r, Pixel data) {
+		long key = data.getLocation().key();
 		if (r.isLeaf() == true) {
-			this.root = new BinaryNode(data, new BinaryNode(), new BinaryNode(), null);
-		} else {
-			if (key.compareTo(r.getData().getLocation()) == -1) {
-				if (r.getLeft().isLeaf() == true) {
-					r.setLeft(newNode);
-					newNode.getLeft().setParent(newNode);
-					newNode.getRight().setParent(newNode);
-				} else {
-					putHelper(r.getLeft(), data);
-				}
-			} else if (key.compareTo(r.getData().getLocation()) == 1) {
-				if (r.getRight().isLeaf() == true) {
-					r.setRight(newNode);
-					newNode.getLeft().setParent(newNode);
-					newNode.getRight().setParent(newNode);
+			this.root = new BinaryNode(data, LEAF, LEAF, null);
+			return true;
+		}
+		BinaryNode node = r;
+		while (true) {
+			long nodeKey = node.getKey();
+			if (key == nodeKey) {
+				return false;
+			}
+			BinaryNode child = (key < nodeKey) ? node.getLeft() : node.getRight();
+			if (child.isLeaf() == true) {
+				BinaryNode newNode = new BinaryNode(data, LEAF, LEAF, node);
+				if (key < nodeKey) {
+					node.setLeft(newNode);
 				} else {
-					putHelper(r.getRight(), data);
+					node.setRight(newNode);
 				}
+				rebalance(node);
+				return true;
 			}
+			node = child;
 		}
 	}
 
@@ -112,42 +250,30 @@ public class BinarySearchTree implements BinarySearchTreeADT {
 	 * 
 	 */
 	public void remove(BinaryNode r, Location key) throws InexistentKeyException {
-		BinaryNode nodeFound = getHelper(r, key);
+		BinaryNode nodeFound = getHelper(r, key.key());
 		if ((r.isLeaf() == true) || (nodeFound.isLeaf() == true)) {
 			throw new InexistentKeyException("A data item with this key is not stored in the BST");
+		}
+		if ((nodeFound.getLeft().isLeaf() == false) && (nodeFound.getRight().isLeaf() == false)) {
+			// Replace the data by that of the successor, which has no left child, and
+			// unlink the successor instead
+			BinaryNode smallest = smallestHelper(nodeFound.getRight());
+			nodeFound.setData(smallest.getData());
+			nodeFound = smallest;
+		}
+		BinaryNode parent = nodeFound.getParent();
+		if (nodeFound.getLeft().isLeaf() == true) {
+			replaceChild(parent, nodeFound, nodeFound.getRight());
 		} else {
-			BinaryNode parent = nodeFound.getParent();
-			BinaryNode otherChild;
-			if ((nodeFound.getLeft().isLeaf() == true) && (nodeFound.getRight().isLeaf() == true)) {
-				nodeFound.setData(null);
-				nodeFound.setLeft(null);
-				nodeFound.setRight(null);
-			} else if ((nodeFound.getLeft().isLeaf() == true) && (nodeFound.getRight().isLeaf() == false)) {
-				otherChild = nodeFound.getRight();
-				otherChild.setParent(parent);
-				if (parent.getLeft() == nodeFound) {
-					parent.setLeft(otherChild);
-				} else {
-					parent.setRight(otherChild);
-				}
-			} else if ((nodeFound.getLeft().isLeaf() == false) && (nodeFound.getRight().isLeaf() == true)) {
-				otherChild = nodeFound.getLeft();
-				otherChild.setParent(parent);
-				if (parent.getLeft() == nodeFound) {
-					parent.setLeft(otherChild);
-				} else {
-					parent.setRight(otherChild);
-				}
-			} else {
-				BinaryNode smallest = smallestHelper(nodeFound.getRight());
-				nodeFound.setData(smallest.getData());
-				remove(smallest, smallest.getData().getLocation());
-			}
+			replaceChild(parent, nodeFound, nodeFound.getLeft());
 		}
+		rebalance(parent);
 	}
 
 	/**
-	 * Returns the pixel with the smallest key larger than the given one.
+	 * Returns the pixel with the smallest key larger than the given one. The
+	 * search walks down from r once, remembering the last node where it turned
+	 * left, so the given key does not need to be stored in the tree.
 	 * 
 	 * @param r   is the root of the tree
 	 * @param key is the key of who's successor is being searched for
@@ -156,28 +282,51 @@ public class BinarySearchTree implements BinarySearchTreeADT {
 	 * 
 	 */
 	public Pixel successor(BinaryNode r, Location key) {
-		if (r.isLeaf() == true) {
-			return null;
-		} else {
-			BinaryNode nodeFound = getHelper(r, key);
-			if ((nodeFound.isLeaf() == false) && (nodeFound.getRight().isLeaf() == false)) {
-				return smallestHelper(nodeFound.getRight()).getData();
+		return successorHelper(r, key.key());
+	}
+
+	/**
+	 * Returns the pixel with the smallest key larger than (x, y), without
+	 * allocating a Location for the key.
+	 * 
+	 * @param r is the root of the tree
+	 * @param x is the x coordinate of the key
+	 * @param y is the y coordinate of the key
+	 * @return the pixel with the smallest key larger than the given one or null if
+	 *         the given key has no successor
+	 * 
+	 */
+	public Pixel successor(BinaryNode r, int x, int y) {
+		return successorHelper(r, Location.key(x, y));
+	}
+
+	/**
+	 * Helper method. Returns the pixel with the smallest key larger than the given
+	 * packed key.
+	 * 
+	 * @param r   is the root of the tree
+	 * @param key is the packed key, see Location.key()
+	 * @return the pixel with the smallest key larger than the given one or null if
+	 *         the given key has no successor
+	 */
+	private Pixel successorHelper(BinaryNode r, long key) {
+		BinaryNode node = r;
+		Pixel found = null;
+		while (node.isLeaf() == false) {
+			if (node.getKey() > key) {
+				found = node.getData();
+				node = node.getLeft();
 			} else {
-				BinaryNode parent = nodeFound.getParent();
-				while ((nodeFound.getParent() != null) && (parent.getData().getLocation().compareTo(key) == -1)) {
-					parent = parent.getParent();
-				}
-				if (parent.getData() == null) {
-					return null;
-				} else {
-					return parent.getData();
-				}
+				node = node.getRight();
 			}
 		}
+		return found;
 	}
 
 	/**
-	 * Returns the pixel with the largest key smaller than the given one.
+	 * Returns the pixel with the largest key smaller than the given one. The
+	 * search walks down from r once, remembering the last node where it turned
+	 * right, so the given key does not need to be stored in the tree.
 	 * 
 	 * @param r   is the root of the tree
 	 * @param key is the key of who's predecessor is being searched for
@@ -186,24 +335,68 @@ public class BinarySearchTree implements BinarySearchTreeADT {
 	 * 
 	 */
 	public Pixel predecessor(BinaryNode r, Location key) {
-		if (r.isLeaf() == true) {
-			return null;
-		} else {
-			BinaryNode nodeFound = getHelper(r, key);
-			if ((nodeFound.isLeaf() == false) && (nodeFound.getLeft().isLeaf() == false)) {
-				return largestHelper(nodeFound.getLeft()).getData();
+		return predecessorHelper(r, key.key());
+	}
+
+	/**
+	 * Returns the pixel with the largest key smaller than (x, y), without
+	 * allocating a Location for the key.
+	 * 
+	 * @param r is the root of the tree
+	 * @param x is the x coordinate of the key
+	 * @param y is the y coordinate of the key
+	 * @return the pixel with the largest key smaller than the given one or null if
+	 *         the given key has no predecessor
+	 * 
+	 */
+	public Pixel predecessor(BinaryNode r, int x, int y) {
+		return predecessorHelper(r, Location.key(x, y));
+	}
+
+	/**
+	 * Helper method. Returns the node with the smallest key larger than or equal
+	 * to the given packed key.
+	 * 
+	 * @param r   is the root of the tree
+	 * @param key is the packed key, see Location.key()
+	 * @return the node with the smallest key not smaller than the given one, or
+	 *         null if there is none
+	 */
+	private BinaryNode ceilingHelper(BinaryNode r, long key) {
+		BinaryNode node = r;
+		BinaryNode found = null;
+		while (node.isLeaf() == false) {
+			if (node.getKey() >= key) {
+				found = node;
+				node = node.getLeft();
 			} else {
-				BinaryNode parent = nodeFound.getParent();
-				while ((parent != null) && (parent.getData().getLocation().compareTo(key) == 1)) {
-					parent = parent.getParent();
-				}
-				if (parent.getData() == null) {
-					return null;
-				} else {
-					return parent.getData();
-				}
+				node = node.getRight();
 			}
 		}
+		return found;
+	}
+
+	/**
+	 * Helper method. Returns the pixel with the largest key smaller than the given
+	 * packed key.
+	 * 
+	 * @param r   is the root of the tree
+	 * @param key is the packed key, see Location.key()
+	 * @return the pixel with the largest key smaller than the given one or null if
+	 *         the given key has no predecessor
+	 */
+	private Pixel predecessorHelper(BinaryNode r, long key) {
+		BinaryNode node = r;
+		Pixel found = null;
+		while (node.isLeaf() == false) {
+			if (node.getKey() < key) {
+				found = node.getData();
+				node = node.getRight();
+			} else {
+				node = node.getLeft();
+			}
+		}
+		return found;
 	}
 
 	/**
@@ -270,6 +463,247 @@ public class BinarySearchTree implements BinarySearchTreeADT {
 		return node;
 	}
 
+	/**
+	 * Returns a cursor that walks the pixels of the tree in increasing key order.
+	 * The cursor follows the parent links of the nodes, so each step takes
+	 * constant amortized time.
+	 * 
+	 * @return cursor positioned before the smallest pixel
+	 */
+	public PixelCursor cursor() {
+		return new NodeCursor(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns a cursor that walks, in increasing key order, the pixels with
+	 * coordinates xMin <= x <= xMax and yMin <= y <= yMax. Since keys are in
+	 * column order, these pixels lie in the key range from (xMin, yMin) to (xMax,
+	 * yMax); within it, the cursor jumps over the part of each column outside
+	 * [yMin, yMax] with a search from the root instead of visiting it.
+	 * 
+	 * @param xMin is the smallest x coordinate
+	 * @param yMin is the smallest y coordinate
+	 * @param xMax is the largest x coordinate
+	 * @param yMax is the largest y coordinate
+	 * @return cursor positioned before the first pixel in the rectangle
+	 */
+	public PixelCursor range(int xMin, int yMin, int xMax, int yMax) {
+		return new NodeCursor(xMin, yMin, xMax, yMax);
+	}
+
+	/**
+	 * Returns an iterator over the pixels of the tree in increasing key order.
+	 * 
+	 * @return iterator positioned before the smallest pixel
+	 */
+	public Iterator<Pixel> iterator() {
+		return new NodeCursor(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Walks in order the nodes of the tree whose keys lie in a rectangle.
+	 */
+	private class NodeCursor implements PixelCursor, Iterator<Pixel> {
+
+		private BinaryNode current; // node visited last
+		private BinaryNode next; // node to visit next, or null at the end
+		private long last; // largest key in the rectangle
+		private int yMin; // smallest y coordinate in the rectangle
+		private int yMax; // largest y coordinate in the rectangle
+
+		/**
+		 * Constructor that positions the cursor before the first node in the given
+		 * rectangle.
+		 * 
+		 * @param xMin is the smallest x coordinate
+		 * @param yMin is the smallest y coordinate
+		 * @param xMax is the largest x coordinate
+		 * @param yMax is the largest y coordinate
+		 */
+		NodeCursor(int xMin, int yMin, int xMax, int yMax) {
+			this.current = null;
+			this.last = Location.key(xMax, yMax);
+			this.yMin = yMin;
+			this.yMax = yMax;
+			if ((xMin > xMax) || (yMin > yMax)) {
+				this.next = null;
+			} else {
+				this.next = ceilingHelper(root, Location.key(xMin, yMin));
+				skip();
+			}
+		}
+
+		public boolean hasNext() {
+			return this.next != null;
+		}
+
+		public long nextKey() {
+			advance();
+			return this.current.getKey();
+		}
+
+		public int color() {
+			return this.current.getData().getColor();
+		}
+
+		public Pixel next() {
+			advance();
+			return this.current.getData();
+		}
+
+		/**
+		 * Moves to the in-order successor of the current node: the smallest node of
+		 * its right subtree or, if that is empty, the first ancestor reached from a
+		 * left child.
+		 * 
+		 */
+		private void advance() {
+			if (this.next == null) {
+				throw new NoSuchElementException("No more pixels in the BST");
+			}
+			this.current = this.next;
+			BinaryNode node = this.current;
+			if (node.getRight().isLeaf() == false) {
+				this.next = smallestHelper(node.getRight());
+			} else {
+				BinaryNode parent = node.getParent();
+				while ((parent != null) && (parent.getRight() == node)) {
+					node = parent;
+					parent = node.getParent();
+				}
+				this.next = parent;
+			}
+			skip();
+		}
+
+		/**
+		 * Moves the next node forward to the first node inside the rectangle, or to
+		 * null if there is none.
+		 * 
+		 */
+		private void skip() {
+			while (this.next != null) {
+				long key = this.next.getKey();
+				int x = Location.keyX(key);
+				int y = Location.keyY(key);
+				if (key > this.last) {
+					this.next = null;
+				} else if (y < this.yMin) {
+					this.next = ceilingHelper(root, Location.key(x, this.yMin));
+				} else if (y > this.yMax) {
+					this.next = (x == Integer.MAX_VALUE) ? null : ceilingHelper(root, Location.key(x + 1, this.yMin));
+				} else {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Helper method. Makes newChild take the place of oldChild below the given
+	 * parent. If parent is null, newChild becomes the root of the tree. The parent
+	 * link of the shared leaf is never set.
+	 * 
+	 * @param parent   is the parent of oldChild, or null if oldChild is the root
+	 * @param oldChild is the node being replaced
+	 * @param newChild is the node taking its place
+	 */
+	private void replaceChild(BinaryNode parent, BinaryNode oldChild, BinaryNode newChild) {
+		if (newChild != LEAF) {
+			newChild.setParent(parent);
+		}
+		if (parent == null) {
+			this.root = newChild;
+		} else if (parent.getLeft() == oldChild) {
+			parent.setLeft(newChild);
+		} else {
+			parent.setRight(newChild);
+		}
+	}
+
+	/**
+	 * Helper method. Recomputes the height of the given internal node from the
+	 * heights of its children.
+	 * 
+	 * @param r is the node whose height is updated
+	 */
+	private void updateHeight(BinaryNode r) {
+		r.setHeight(1 + Math.max(r.getLeft().getHeight(), r.getRight().getHeight()));
+	}
+
+	/**
+	 * Helper method. Rotates the subtree rooted at r to the left and returns the
+	 * new root of the subtree.
+	 * 
+	 * @param r is the root of the subtree
+	 * @return the new root of the subtree
+	 */
+	private BinaryNode rotateLeft(BinaryNode r) {
+		BinaryNode pivot = r.getRight();
+		r.setRight(pivot.getLeft());
+		if (pivot.getLeft() != LEAF) {
+			pivot.getLeft().setParent(r);
+		}
+		replaceChild(r.getParent(), r, pivot);
+		pivot.setLeft(r);
+		r.setParent(pivot);
+		updateHeight(r);
+		updateHeight(pivot);
+		return pivot;
+	}
+
+	/**
+	 * Helper method. Rotates the subtree rooted at r to the right and returns the
+	 * new root of the subtree.
+	 * 
+	 * @param r is the root of the subtree
+	 * @return the new root of the subtree
+	 */
+	private BinaryNode rotateRight(BinaryNode r) {
+		BinaryNode pivot = r.getLeft();
+		r.setLeft(pivot.getRight());
+		if (pivot.getRight() != LEAF) {
+			pivot.getRight().setParent(r);
+		}
+		replaceChild(r.getParent(), r, pivot);
+		pivot.setRight(r);
+		r.setParent(pivot);
+		updateHeight(r);
+		updateHeight(pivot);
+		return pivot;
+	}
+
+	/**
+	 * Helper method. Walks from the given node up to the root, updating heights
+	 * and, if the tree is self-balancing, performing the AVL rotations needed to
+	 * restore the balance of every node on the path.
+	 * 
+	 * @param r is the lowest node whose subtree changed, or null
+	 */
+	private void rebalance(BinaryNode r) {
+		BinaryNode node = r;
+		while (node != null) {
+			updateHeight(node);
+			if (this.balanced == true) {
+				int balance = node.getLeft().getHeight() - node.getRight().getHeight();
+				if (balance > 1) {
+					BinaryNode child = node.getLeft();
+					if (child.getLeft().getHeight() < child.getRight().getHeight()) {
+						rotateLeft(child);
+					}
+					node = rotateRight(node);
+				} else if (balance < -1) {
+					BinaryNode child = node.getRight();
+					if (child.getRight().getHeight() < child.getLeft().getHeight()) {
+						rotateRight(child);
+					}
+					node = rotateLeft(node);
+				}
+			}
+			node = node.getParent();
+		}
+	}
+
 	/**
 	 * Returns the root of the binary search tree.
 	 * 
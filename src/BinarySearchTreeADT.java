@@ -1,4 +1,6 @@
-public interface BinarySearchTreeADT {
+import java.util.Iterator;
+
+public interface BinarySearchTreeADT extends Iterable<Pixel> {
 
 	/*
 	 * Returns the root of the binary search tree
@@ -11,6 +13,17 @@ public interface BinarySearchTreeADT {
 	 */
 	public Pixel get(BinaryNode r, Location key);
 
+	/*
+	 * Returns the Pixel object storing the key (x, y), if the key is stored in
+	 * the tree. Returns null otherwise.
+	 */
+	public Pixel get(BinaryNode r, int x, int y);
+
+	/*
+	 * Returns true if the key (x, y) is stored in the tree and false otherwise.
+	 */
+	public boolean contains(BinaryNode r, int x, int y);
+
 	/*
 	 * Inserts the given data in the tree if no data item with the same key is
 	 * already there. If a node already stores the same key, the algorithm
@@ -18,6 +31,21 @@ public interface BinarySearchTreeADT {
 	 */
 	public void put(BinaryNode r, Pixel data) throws DuplicatedKeyException;
 
+	/*
+	 * Inserts a Pixel with key (x, y) and the given color in the tree if no
+	 * data item with the same key is already there. If a node already stores
+	 * the same key, the algorithm throws a DuplicatedKeyException.
+	 */
+	public void put(BinaryNode r, int x, int y, int color) throws DuplicatedKeyException;
+
+	/*
+	 * Replaces the contents of the tree by the first n pixels with the given
+	 * packed keys (see Location.key()) and colors, which must be in increasing
+	 * key order. The tree is built perfectly balanced in linear time. Throws a
+	 * DuplicatedKeyException if two consecutive keys are equal.
+	 */
+	public void build(long[] keys, int[] colors, int n) throws DuplicatedKeyException;
+
 	/*
 	 * Removes the data item with the given key, if the key is stored in the
 	 * tree. Throws an InexistentKeyException otherwise.
@@ -31,6 +59,12 @@ public interface BinarySearchTreeADT {
 	 */
 	public Pixel successor(BinaryNode r, Location key);
 
+	/*
+	 * Returns the Pixel with the smallest key larger than (x, y). Returns null
+	 * if the given key has no successor.
+	 */
+	public Pixel successor(BinaryNode r, int x, int y);
+
 	/*
 	 * Returns the Pixel with the largest key smaller than the given one (note
 	 * that the tree does not need to store a node with the given key). Returns
@@ -38,6 +72,12 @@ public interface BinarySearchTreeADT {
 	 */
 	public Pixel predecessor(BinaryNode r, Location key);
 
+	/*
+	 * Returns the Pixel with the largest key smaller than (x, y). Returns null
+	 * if the given key has no predecessor.
+	 */
+	public Pixel predecessor(BinaryNode r, int x, int y);
+
 	/*
 	 * Returns the Pixel with the smallest key. Throws an EmptyTreeException if
 	 * the tree is empty.
@@ -49,4 +89,22 @@ public interface BinarySearchTreeADT {
 	 * the tree is empty.
 	 */
 	public Pixel largest(BinaryNode r) throws EmptyTreeException;
+
+	/*
+	 * Returns a cursor that walks the keys and colors of the pixels in the tree
+	 * in increasing key order. Walking the whole tree takes linear time.
+	 */
+	public PixelCursor cursor();
+
+	/*
+	 * Returns a cursor that walks, in increasing key order, the pixels with
+	 * coordinates xMin <= x <= xMax and yMin <= y <= yMax.
+	 */
+	public PixelCursor range(int xMin, int yMin, int xMax, int yMax);
+
+	/*
+	 * Returns an iterator over the Pixels of the tree in increasing key order.
+	 * Iterating over the whole tree takes linear time.
+	 */
+	public Iterator<Pixel> iterator();
 }
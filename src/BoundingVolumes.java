@@ -0,0 +1,126 @@
+import java.util.Arrays;
+
+/**
+ * Finds the figures that may intersect a given one with two RectangleTrees of
+ * enclosing rectangles: one for the fixed figures, built once, and one for the
+ * figures that move. A query goes down both trees, so its cost grows with the
+ * logarithm of the number of figures however they are clustered, and the many
+ * fixed figures of a level do not make the updates of the moving ones dearer.
+ * 
+ * The rectangle stored for a moving figure is its own enclosed in a margin of
+ * MARGIN pixels on each side, so the figure can move a few steps before its
+ * leaf has to be removed and inserted again. Fixed figures are stored without
+ * a margin. Killed figures are removed.
+ * 
+ * @author Bazillah Zargar
+ */
+public class BoundingVolumes implements BroadphaseADT {
+
+	private static final String FIGURE_KILLED = "killed"; // type of figures that were destroyed
+	private static final String FIXED = "fixed"; // type of figures that never move
+	private static final int MARGIN = 8; // pixels added around the rectangles of moving figures
+
+	private final RectangleTree fixed = new RectangleTree(); // rectangles of the fixed figures
+	private final RectangleTree moving = new RectangleTree(); // enlarged rectangles of the other figures
+	private int[] leaves; // leaf of each figure, 0 if it is in no tree
+	private boolean[] still; // true if the leaf of each figure is in the tree of fixed figures
+	private long queries; // number of calls to candidates
+	private long found; // number of candidates returned
+
+	/**
+	 * Constructor that creates empty trees.
+	 * 
+	 */
+	public BoundingVolumes() {
+		this.leaves = new int[0];
+		this.still = new boolean[0];
+	}
+
+	/**
+	 * Records the enclosing rectangle of figure figs[fignum] at its current
+	 * offset. The leaf of the figure is only replaced if its rectangle no longer
+	 * encloses that of the figure.
+	 * 
+	 * @param figs   is the array of figures
+	 * @param fignum is the index of the figure that was added or moved
+	 */
+	public void update(GraphicalFigure[] figs, int fignum) {
+		if (fignum >= this.leaves.length) {
+			int size = Math.max(fignum + 1, 2 * this.leaves.length);
+			this.leaves = Arrays.copyOf(this.leaves, size);
+			this.still = Arrays.copyOf(this.still, size);
+		}
+		GraphicalFigure fig = figs[fignum];
+		int leaf = this.leaves[fignum];
+		RectangleTree tree = this.still[fignum] ? this.fixed : this.moving;
+		if (fig.getType().equals(FIGURE_KILLED)) {
+			if (leaf != 0) {
+				tree.remove(leaf);
+				this.leaves[fignum] = 0;
+			}
+			return;
+		}
+		int x0 = fig.getX(), y0 = fig.getY();
+		int x1 = x0 + fig.getWidth(), y1 = y0 + fig.getHeight();
+		if ((leaf != 0) && tree.encloses(leaf, x0, y0, x1, y1)) {
+			return;
+		}
+		if (leaf != 0) {
+			tree.remove(leaf);
+		}
+		this.still[fignum] = fig.getType().equals(FIXED);
+		if (this.still[fignum]) {
+			this.leaves[fignum] = this.fixed.insert(fignum, x0, y0, x1, y1);
+		} else {
+			this.leaves[fignum] = this.moving.insert(fignum, x0 - MARGIN, y0 - MARGIN, x1 + MARGIN, y1 + MARGIN);
+		}
+	}
+
+	/**
+	 * Stores in result, in increasing order, the indices of the figures whose
+	 * stored rectangles meet the rectangle swept by figure figs[fignum] when it
+	 * moves by (dx, dy) from its current offset, and returns how many there are.
+	 * 
+	 * @param figs   is the array of figures
+	 * @param fignum is the index of the figure being moved
+	 * @param dx     is the displacement of the figure to the right
+	 * @param dy     is the displacement of the figure down
+	 * @param result is the array where the indices are stored
+	 * @return the number of candidates
+	 */
+	public int candidates(GraphicalFigure[] figs, int fignum, int dx, int dy, int[] result) {
+		GraphicalFigure fig = figs[fignum];
+		int x0 = fig.getX() + Math.min(dx, 0), y0 = fig.getY() + Math.min(dy, 0);
+		int x1 = fig.getX() + fig.getWidth() + Math.max(dx, 0), y1 = fig.getY() + fig.getHeight() + Math.max(dy, 0);
+		int n = this.fixed.query(x0, y0, x1, y1, result, 0);
+		n = this.moving.query(x0, y0, x1, y1, result, n);
+		// Leave out the figure itself
+		for (int k = 0; k < n; ++k)
+			if (result[k] == fignum) {
+				result[k] = result[--n];
+				break;
+			}
+		Arrays.sort(result, 0, n);
+		++this.queries;
+		this.found += n;
+		return n;
+	}
+
+	/**
+	 * Returns the number of calls to candidates so far.
+	 * 
+	 * @return number of queries
+	 */
+	public long getQueries() {
+		return this.queries;
+	}
+
+	/**
+	 * Returns the number of candidates returned so far.
+	 * 
+	 * @return number of candidates
+	 */
+	public long getCandidates() {
+		return this.found;
+	}
+}
@@ -0,0 +1,27 @@
+public interface BroadphaseADT {
+	/*
+	 * Records the enclosing rectangle of figure figs[fignum] at its current offset,
+	 * replacing the one recorded before. Killed figures are removed.
+	 */
+	public void update(GraphicalFigure[] figs, int fignum);
+
+	/*
+	 * Stores in result, in increasing order, the indices of the figures whose
+	 * enclosing rectangles may intersect that of figure figs[fignum] at any
+	 * offset between its current one and that moved by (dx, dy), and returns how
+	 * many there are. Figure fignum is not included. The array must have room
+	 * for the indices of all the figures. The figure may be recorded with the
+	 * rectangle swept by the move, so update must be called once it has moved.
+	 */
+	public int candidates(GraphicalFigure[] figs, int fignum, int dx, int dy, int[] result);
+
+	/*
+	 * Returns the number of calls to candidates so far
+	 */
+	public long getQueries();
+
+	/*
+	 * Returns the number of candidates returned by candidates so far
+	 */
+	public long getCandidates();
+}
@@ -0,0 +1,65 @@
+/**
+ * Reports every live figure as a candidate for every other one, like the loops
+ * over all the figures that the movers used before there was a broadphase. It
+ * is kept to compare the numbers of candidates of the other broadphases with
+ * those of the plain loop.
+ * 
+ * @author Bazillah Zargar
+ */
+public class BruteForce implements BroadphaseADT {
+
+	private static final String FIGURE_KILLED = "killed"; // type of figures that were destroyed
+
+	private int figures; // number of figures seen so far
+	private long queries; // number of calls to candidates
+	private long found; // number of candidates returned
+
+	/**
+	 * Remembers that there are at least fignum + 1 figures.
+	 * 
+	 * @param figs   is the array of figures
+	 * @param fignum is the index of the figure that was added or moved
+	 */
+	public void update(GraphicalFigure[] figs, int fignum) {
+		this.figures = Math.max(this.figures, fignum + 1);
+	}
+
+	/**
+	 * Stores in result the indices of all the figures other than figs[fignum]
+	 * that were not killed, and returns how many there are.
+	 * 
+	 * @param figs   is the array of figures
+	 * @param fignum is the index of the figure being moved
+	 * @param dx     is the displacement of the figure to the right
+	 * @param dy     is the displacement of the figure down
+	 * @param result is the array where the indices are stored
+	 * @return the number of candidates
+	 */
+	public int candidates(GraphicalFigure[] figs, int fignum, int dx, int dy, int[] result) {
+		int n = 0;
+		for (int i = 0; i < this.figures; ++i)
+			if ((i != fignum) && !figs[i].getType().equals(FIGURE_KILLED))
+				result[n++] = i;
+		++this.queries;
+		this.found += n;
+		return n;
+	}
+
+	/**
+	 * Returns the number of calls to candidates so far.
+	 * 
+	 * @return number of queries
+	 */
+	public long getQueries() {
+		return this.queries;
+	}
+
+	/**
+	 * Returns the number of candidates returned so far.
+	 * 
+	 * @return number of candidates
+	 */
+	public long getCandidates() {
+		return this.found;
+	}
+}
@@ -0,0 +1,189 @@
+/**
+ * Remembers the results of recent pixel tests between pairs of figures. The
+ * result of a test depends only on the shapes of the two figures, identified
+ * by their masks, and on the offset between them, so figures that go back and
+ * forth along the same corridors keep asking for results that are already
+ * known.
+ * 
+ * Entries are kept in primitive arrays, grouped in sets of WAYS entries; the
+ * set of an entry is chosen by hashing its key, and when the set is full its
+ * least recently used entry is replaced. Looking up an entry never allocates
+ * memory and the cache never holds more entries than its capacity. The numbers
+ * of hits, misses and replaced entries are counted so that the capacity can be
+ * chosen for a level.
+ * 
+ * @author Bazillah Zargar
+ */
+public class CollisionCache {
+
+	private static final int WAYS = 4; // entries per set
+
+	private final long[] pairs; // ids of the two masks of each entry
+	private final long[] offsets; // offset between the two figures of each entry
+	private final long[] used; // time of the last use of each entry, or 0 if it is empty
+	private final boolean[] results; // result of the test of each entry
+	private final int sets; // number of sets, a power of 2
+	private long clock; // number of uses so far
+	private long hits; // number of lookups that found their entry
+	private long misses; // number of lookups that did not find their entry
+	private long evictions; // number of entries replaced by newer ones
+
+	/**
+	 * Constructor that creates an empty cache for at least the given number of
+	 * entries. The capacity is rounded up to a power of 2.
+	 * 
+	 * @param capacity is the number of entries to keep
+	 */
+	public CollisionCache(int capacity) {
+		this.sets = Integer.highestOneBit(Math.max((capacity + WAYS - 1) / WAYS, 1) * 2 - 1);
+		this.pairs = new long[this.sets * WAYS];
+		this.offsets = new long[this.sets * WAYS];
+		this.used = new long[this.sets * WAYS];
+		this.results = new boolean[this.sets * WAYS];
+	}
+
+	/**
+	 * Returns the number of entries the cache can hold.
+	 * 
+	 * @return capacity of the cache
+	 */
+	public int getCapacity() {
+		return this.sets * WAYS;
+	}
+
+	/**
+	 * Returns the number of lookups that found their entry.
+	 * 
+	 * @return number of hits
+	 */
+	public long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * Returns the number of lookups that did not find their entry.
+	 * 
+	 * @return number of misses
+	 */
+	public long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * Returns the number of entries that were replaced by newer ones.
+	 * 
+	 * @return number of evictions
+	 */
+	public long getEvictions() {
+		return this.evictions;
+	}
+
+	/**
+	 * Returns the result of the test of mask a against mask b placed at (dx, dy)
+	 * relative to it: 1 if they overlap, 0 if they do not, and -1 if the result
+	 * is not in the cache.
+	 * 
+	 * @param a  is the mask of the first figure
+	 * @param b  is the mask of the second figure
+	 * @param dx is the x offset of the second figure minus that of the first one
+	 * @param dy is the y offset of the second figure minus that of the first one
+	 * @return 1, 0 or -1
+	 */
+	public int get(PixelMask a, PixelMask b, int dx, int dy) {
+		int entry = find(a, b, dx, dy);
+		if (entry < 0) {
+			++this.misses;
+			return -1;
+		}
+		++this.hits;
+		this.used[entry] = ++this.clock;
+		return this.results[entry] ? 1 : 0;
+	}
+
+	/**
+	 * Stores the result of the test of mask a against mask b placed at (dx, dy)
+	 * relative to it, replacing the least recently used entry of its set if the
+	 * set is full.
+	 * 
+	 * @param a      is the mask of the first figure
+	 * @param b      is the mask of the second figure
+	 * @param dx     is the x offset of the second figure minus that of the first one
+	 * @param dy     is the y offset of the second figure minus that of the first one
+	 * @param result is true if the masks overlap
+	 */
+	public void put(PixelMask a, PixelMask b, int dx, int dy, boolean result) {
+		int entry = find(a, b, dx, dy);
+		if (entry < 0) {
+			// The test is symmetric, so the mask with the smaller id always comes first
+			long pair = pair(a, b);
+			long offset = (a.getId() <= b.getId()) ? offset(dx, dy) : offset(-dx, -dy);
+			int base = set(pair, offset) * WAYS;
+			entry = base;
+			for (int i = base + 1; i < base + WAYS; ++i)
+				if (this.used[i] < this.used[entry])
+					entry = i;
+			if (this.used[entry] != 0)
+				++this.evictions;
+			this.pairs[entry] = pair;
+			this.offsets[entry] = offset;
+		}
+		this.results[entry] = result;
+		this.used[entry] = ++this.clock;
+	}
+
+	/**
+	 * Helper method. Returns the position of the entry for the given masks and
+	 * offset, or -1 if there is none.
+	 * 
+	 * @param a  is the mask of the first figure
+	 * @param b  is the mask of the second figure
+	 * @param dx is the x offset of the second figure minus that of the first one
+	 * @param dy is the y offset of the second figure minus that of the first one
+	 * @return position of the entry, or -1
+	 */
+	private int find(PixelMask a, PixelMask b, int dx, int dy) {
+		long pair = pair(a, b);
+		long offset = (a.getId() <= b.getId()) ? offset(dx, dy) : offset(-dx, -dy);
+		int base = set(pair, offset) * WAYS;
+		for (int i = base; i < base + WAYS; ++i)
+			if ((this.used[i] != 0) && (this.pairs[i] == pair) && (this.offsets[i] == offset))
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Helper method. Packs the ids of two masks into a long, the smaller one
+	 * first.
+	 * 
+	 * @param a is the first mask
+	 * @param b is the second mask
+	 * @return the packed ids
+	 */
+	private static long pair(PixelMask a, PixelMask b) {
+		int low = Math.min(a.getId(), b.getId()), high = Math.max(a.getId(), b.getId());
+		return ((long) low << 32) | (high & 0xffffffffL);
+	}
+
+	/**
+	 * Helper method. Packs an offset into a long.
+	 * 
+	 * @param dx is the x offset
+	 * @param dy is the y offset
+	 * @return the packed offset
+	 */
+	private static long offset(int dx, int dy) {
+		return ((long) dx << 32) | (dy & 0xffffffffL);
+	}
+
+	/**
+	 * Helper method. Returns the set of the entry with the given key.
+	 * 
+	 * @param pair   is the packed ids of the masks
+	 * @param offset is the packed offset
+	 * @return the set of the entry
+	 */
+	private int set(long pair, long offset) {
+		long hash = (pair * 0x9E3779B97F4A7C15L) ^ (offset * 0xC2B2AE3D27D4EB4FL);
+		return (int) (hash >>> 32) & (this.sets - 1);
+	}
+}
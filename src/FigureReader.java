@@ -0,0 +1,143 @@
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.StringTokenizer;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Reads the figures of a game from an input file. Each line of the file has
+ * the form: x y type file where (x,y) is the coordinate of the upper left
+ * corner of where the figure will be drawn, type is "fixed", "user",
+ * "computer" or "target", and file is the name of an image file in .bmp,
+ * .jpeg, or .gif format. Figures drawn from the same image share a Sprite,
+ * so each image is read only once. Images are only decoded, never shown, so
+ * figures can be read without a display.
+ * 
+ * @author Bazillah Zargar
+ */
+public class FigureReader {
+
+	private static final int THRESHOLD = 225; // transparent pixels have RGB values >= threshold
+	private static final int TRANSPARENT = 0xCDC8CD; // background color with transparency
+	private static final int SOLID = 0xFFCDC8CD; // background color
+
+	private GraphicalFigure[] figs = new GraphicalFigure[16]; // figures read
+	private Sprite[] spriteOf = new Sprite[16]; // sprite of each figure
+	private int numFigures; // number of figures read
+	private HashMap<String, Sprite> sprites = new HashMap<String, Sprite>(); // images already read, by file
+	                                                                          // and threshold
+
+	/**
+	 * Constructor that reads all the figures of the given input file.
+	 * 
+	 * @param name is the name of the input file
+	 * @throws IOException            if a file cannot be read
+	 * @throws DuplicatedKeyException if the pixels of an image cannot be stored
+	 */
+	public FigureReader(String name) throws IOException, DuplicatedKeyException {
+		BufferedReader input = new BufferedReader(new InputStreamReader(new FileInputStream(new File(name))));
+		try {
+			for (String line = input.readLine(); line != null; line = input.readLine()) {
+				StringTokenizer tokenizer = new StringTokenizer(line);
+				if (!tokenizer.hasMoreTokens())
+					continue;
+				int x = Integer.parseInt(tokenizer.nextToken());
+				int y = Integer.parseInt(tokenizer.nextToken());
+				String type = tokenizer.nextToken();
+				String imagefile = tokenizer.nextToken();
+
+				Sprite sprite = sprites.get(imagefile + " " + THRESHOLD);
+				if (sprite == null) {
+					sprite = insertPoints(ImageIO.read(new File(imagefile)));
+					sprites.put(imagefile + " " + THRESHOLD, sprite);
+				}
+				if (numFigures == figs.length) {
+					figs = Arrays.copyOf(figs, 2 * numFigures);
+					spriteOf = Arrays.copyOf(spriteOf, 2 * numFigures);
+				}
+				figs[numFigures] = new GraphicalFigure(numFigures, sprite.getWidth(), sprite.getHeight(), type,
+						new Location(x, y), new ArrayBinarySearchTree(0));
+				figs[numFigures].setRuns(sprite.getRuns());
+				spriteOf[numFigures++] = sprite;
+			}
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Returns the array of figures read.
+	 * 
+	 * @return array of figures
+	 */
+	public GraphicalFigure[] getFigures() {
+		return this.figs;
+	}
+
+	/**
+	 * Returns the number of figures read.
+	 * 
+	 * @return number of figures
+	 */
+	public int getNumFigures() {
+		return this.numFigures;
+	}
+
+	/**
+	 * Returns the sprite of figure figs[fignum], with the images used to draw
+	 * and erase it.
+	 * 
+	 * @param fignum is the index of the figure
+	 * @return sprite of the figure
+	 */
+	public Sprite getSprite(int fignum) {
+		return this.spriteOf[fignum];
+	}
+
+	/**
+	 * Helper method. Stores the pixels of the image that are not transparent as
+	 * runs, and builds the images used to draw and erase the figures.
+	 * 
+	 * @param im is the image read from the file
+	 * @return sprite of the image
+	 * @throws DuplicatedKeyException if the pixels cannot be stored
+	 */
+	private Sprite insertPoints(BufferedImage im) throws DuplicatedKeyException {
+		int rgb, n = 0;
+		int width = im.getWidth(), height = im.getHeight();
+		long[] keys = new long[width * height];
+		int[] colors = new int[width * height];
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
+		BufferedImage erasedImage = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
+
+		/*
+		 * Scan the pixels column by column, which is the order of their keys, and
+		 * build their runs in a single pass
+		 */
+		for (int x = 0; x < width; ++x)
+			for (int y = 0; y < height; ++y) {
+				rgb = im.getRGB(x, y);
+				if (((rgb & 0xff) >= THRESHOLD) && (((rgb & 0xff00) >> 8) >= THRESHOLD)
+						&& (((rgb & 0xff0000) >> 16) >= THRESHOLD))
+					rgb = rgb & 0x00ffffff; // Transparent pixels are not stored
+				else {
+					keys[n] = Location.key(x, y);
+					colors[n++] = rgb;
+				}
+				image.setRGB(x, y, rgb);
+
+				if ((rgb & 0xff000000) == 0) // Graphical object of same color as background
+					// used to erase the current graphical object
+					erasedImage.setRGB(x, y, TRANSPARENT);
+				else
+					erasedImage.setRGB(x, y, SOLID);
+			}
+		return new Sprite(width, height, new PixelRuns(keys, colors, n), image, erasedImage);
+	}
+}
@@ -0,0 +1,7 @@
+public interface FrameListener {
+	/*
+	 * Called by the game loop after the ticks of each frame, with the fraction
+	 * of the next tick that has already gone by, from 0 to 1
+	 */
+	public void frame(double alpha);
+}
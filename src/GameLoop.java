@@ -0,0 +1,176 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays a Simulation at a fixed number of ticks per second on a thread of its
+ * own. Frames are scheduled at a fixed rate, and each frame plays the ticks
+ * whose time has come, so the length of a tick does not depend on how long it
+ * takes to play it. When the loop falls behind, at most MAX_CATCH_UP ticks
+ * are played in a frame and the rest are skipped, so a slow tick makes the
+ * game slower rather than making it race to catch up. After its ticks, each
+ * frame tells the FrameListener how far it is into the next tick, so figures
+ * can be drawn between where they were and where they are.
+ * 
+ * Pausing cancels the frames and resuming schedules them again, so both take
+ * effect at once; only a tick already being played is finished.
+ * 
+ * @author Bazillah Zargar
+ */
+public class GameLoop {
+
+	private static final int MAX_CATCH_UP = 5; // most ticks played in one frame
+	private static final long FRAME = 1000000000L / 60; // nanoseconds between frames
+
+	private final Simulation simulation; // game played
+	private final FrameListener listener; // told of every frame, or null
+	private final ScheduledExecutorService scheduler; // runs the frames on the thread of the loop
+	private volatile long period; // nanoseconds per tick
+	private volatile boolean running; // false once the game is paused
+	private volatile boolean restart; // true until the first frame after the game is resumed
+	private ScheduledFuture<?> frames; // frames scheduled, or null while paused
+	private long last; // time of the last frame
+	private long lag; // time gone by that has not been played yet
+	private volatile long skipped; // ticks skipped because the loop was behind
+
+	/**
+	 * Constructor that prepares a paused loop for the given game.
+	 * 
+	 * @param simulation is the game to play
+	 * @param listener   is the listener told of every frame, or null
+	 * @param period     is the length of a tick in milliseconds
+	 */
+	public GameLoop(Simulation simulation, FrameListener listener, int period) {
+		this.simulation = simulation;
+		this.listener = listener;
+		setTickPeriod(period);
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "game loop");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Starts or resumes the game. The time the game was paused is not played.
+	 * 
+	 */
+	public synchronized void start() {
+		if (this.frames == null) {
+			this.running = true;
+			this.restart = true;
+			this.frames = this.scheduler.scheduleAtFixedRate(new Frame(), 0, FRAME, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Pauses the game at once: a tick being played is finished, and no other is
+	 * started.
+	 * 
+	 */
+	public synchronized void pause() {
+		if (this.frames != null) {
+			this.running = false;
+			this.frames.cancel(false);
+			this.frames = null;
+		}
+	}
+
+	/**
+	 * Stops the loop for good.
+	 * 
+	 */
+	public synchronized void shutdown() {
+		pause();
+		this.scheduler.shutdown();
+	}
+
+	/**
+	 * Runs a task on the thread of the loop, between two frames, so it does not
+	 * race with the ticks.
+	 * 
+	 * @param task is the task to run
+	 */
+	public void execute(Runnable task) {
+		this.scheduler.execute(task);
+	}
+
+	/**
+	 * Changes the length of a tick. Ticks are never shorter than a frame.
+	 * 
+	 * @param period is the length of a tick in milliseconds
+	 */
+	public void setTickPeriod(int period) {
+		this.period = Math.max(period * 1000000L, FRAME);
+	}
+
+	/**
+	 * Returns the length of a tick.
+	 * 
+	 * @return length of a tick in milliseconds
+	 */
+	public int getTickPeriod() {
+		return (int) (this.period / 1000000L);
+	}
+
+	/**
+	 * Returns the number of ticks skipped because the loop was behind.
+	 * 
+	 * @return number of ticks skipped
+	 */
+	public long getSkipped() {
+		return this.skipped;
+	}
+
+	/**
+	 * Helper method. Plays the ticks whose time has come by the given time,
+	 * skipping those beyond MAX_CATCH_UP, and returns how far the loop is into
+	 * the next tick.
+	 * 
+	 * @param now is the current time in nanoseconds
+	 * @return fraction of the next tick gone by
+	 */
+	private double advance(long now) {
+		long period = this.period;
+		if (this.restart) {
+			this.restart = false;
+			this.last = now;
+			this.lag = 0;
+		}
+		this.lag += now - this.last;
+		this.last = now;
+		for (int ticks = 0; (this.lag >= period) && this.running; ++ticks) {
+			if (ticks == MAX_CATCH_UP) {
+				this.skipped += this.lag / period;
+				this.lag %= period;
+				break;
+			}
+			this.simulation.tick();
+			this.lag -= period;
+		}
+		return Math.min(1.0, (double) this.lag / period);
+	}
+
+	/* =================================================================== */
+	private class Frame implements Runnable {
+		/* =================================================================== */
+		/*
+		 * A frame of the loop. An exception would cancel all the frames that
+		 * follow, so it is only printed
+		 */
+
+		public void run() {
+			try {
+				double alpha = advance(System.nanoTime());
+				if (listener != null)
+					listener.frame(alpha);
+			} catch (Exception e) {
+				System.out.println(e.getMessage());
+			}
+		}
+	}
+}
@@ -10,12 +10,19 @@ public class GraphicalFigure implements GraphicalFigureADT {
 	private int height; // height of the enclosing rectangle for this figure
 	private String type; // type of this figure. can be "fixed" (fixed figure), "user" (moved by the
 							// user), "computer" (moved by the computer, or "target" (target figure)
-	private Location pos; // the offset of the figure
-	private BinarySearchTree bst; // the binary search tree which stores the pixels of this figure
+	private int x; // x coordinate of the offset of the figure
+	private int y; // y coordinate of the offset of the figure
+	private Location pos; // the offset as a Location, null until asked for since it last changed
+	private long travel; // distance the figure has moved so far, along x plus along y
+	private BinarySearchTreeADT bst; // the binary search tree which stores the pixels of this figure
+	private String shape; // how setPixels stores the pixels: "tree", "runs" or "auto"
+	private PixelRuns runs; // runs of the pixels of this figure, or null if they are in the tree
+	private PixelMask mask; // bitmask of the pixels in the tree, null until needed
 
 	/**
 	 * Constructor that creates an empty Binary search tree where the pixels of the
-	 * figure will be stored
+	 * figure will be stored. The tree is self-balancing, so pixel lookups take
+	 * logarithmic time whatever the order in which the pixels are added.
 	 * 
 	 * @param id     is the figure id
 	 * @param width  is the figure width
@@ -28,8 +35,35 @@ public class GraphicalFigure implements GraphicalFigureADT {
 		this.width = width;
 		this.height = height;
 		this.type = type;
+		this.x = pos.xCoord();
+		this.y = pos.yCoord();
 		this.pos = pos;
-		this.bst = new BinarySearchTree();
+		this.bst = new BinarySearchTree(true);
+		this.shape = "auto";
+	}
+
+	/**
+	 * Constructor that stores the pixels of the figure in the given empty binary
+	 * search tree, so the caller can choose its representation, for example an
+	 * ArrayBinarySearchTree.
+	 * 
+	 * @param id     is the figure id
+	 * @param width  is the figure width
+	 * @param height is the figure height
+	 * @param type   is the figure type
+	 * @param pos    is the offset of the figure
+	 * @param bst    is the empty tree where the pixels will be stored
+	 */
+	public GraphicalFigure(int id, int width, int height, String type, Location pos, BinarySearchTreeADT bst) {
+		this.id = id;
+		this.width = width;
+		this.height = height;
+		this.type = type;
+		this.x = pos.xCoord();
+		this.y = pos.yCoord();
+		this.pos = pos;
+		this.bst = bst;
+		this.shape = "auto";
 	}
 
 	/**
@@ -41,6 +75,29 @@ public class GraphicalFigure implements GraphicalFigureADT {
 		this.type = type;
 	}
 
+	/**
+	 * Sets how setPixels stores the pixels of this figure: "tree" keeps them in
+	 * the binary search tree, "runs" as runs of consecutive pixels of each column
+	 * (see PixelRuns), and "auto" as runs if they take less memory than the most
+	 * compact tree would. The default is "auto". Pixels added one by one with
+	 * addPixel are always stored in the tree.
+	 * 
+	 * @param shape is "tree", "runs" or "auto"
+	 */
+	public void setShape(String shape) {
+		this.shape = shape;
+	}
+
+	/**
+	 * Returns true if the pixels of this figure are stored as runs and false if
+	 * they are stored in the binary search tree.
+	 * 
+	 * @return true if the pixels are stored as runs
+	 */
+	public boolean hasRuns() {
+		return this.runs != null;
+	}
+
 	/**
 	 * Returns the width of the enclosing rectangle for this figure.
 	 * 
@@ -83,82 +140,229 @@ public class GraphicalFigure implements GraphicalFigureADT {
 	 * @param offset of figure.
 	 */
 	public Location getOffset() {
+		if (this.pos == null) {
+			this.pos = new Location(this.x, this.y);
+		}
 		return this.pos;
 	}
 
+	/**
+	 * Returns the x coordinate of the offset of this figure.
+	 * 
+	 * @return x coordinate of the offset
+	 */
+	public int getX() {
+		return this.x;
+	}
+
+	/**
+	 * Returns the y coordinate of the offset of this figure.
+	 * 
+	 * @return y coordinate of the offset
+	 */
+	public int getY() {
+		return this.y;
+	}
+
 	/**
 	 * Changes the offset of this figure to the specified value.
 	 * 
 	 * @param value is the new offset the figure.
 	 */
 	public void setOffset(Location value) {
+		setOffset(value.xCoord(), value.yCoord());
 		this.pos = value;
 	}
 
+	/**
+	 * Changes the offset of this figure to (x, y). No Location is created until
+	 * getOffset() is called, so figures can be moved without allocating.
+	 * 
+	 * @param x is the x coordinate of the new offset
+	 * @param y is the y coordinate of the new offset
+	 */
+	public void setOffset(int x, int y) {
+		this.travel += Math.abs(x - this.x) + Math.abs(y - this.y);
+		this.x = x;
+		this.y = y;
+		this.pos = null;
+	}
+
+	/**
+	 * Returns the distance this figure has moved so far: the sum, over all the
+	 * changes of its offset, of the distances moved along x and along y. It never
+	 * decreases, so the figure is at most getTravel() - t pixels away along each
+	 * axis from where it was when the distance was t.
+	 * 
+	 * @return distance moved so far
+	 */
+	public long getTravel() {
+		return this.travel;
+	}
+
 	/**
 	 * Inserts a pixel into the binary search tree that is associated with this
-	 * figure. Throws a DuplicatedKeyException if an error occurs when inserting the
-	 * Pixel into the tree.
+	 * figure. If the pixels of the figure are stored as runs, they are first moved
+	 * into the tree. Throws a DuplicatedKeyException if an error occurs when
+	 * inserting the Pixel into the tree.
 	 * 
 	 * @param pix is the Pixel to be inserted into the tree.
 	 */
 	public void addPixel(Pixel pix) throws DuplicatedKeyException {
 		try {
+			if (runs != null) {
+				long[] keys = new long[runs.size()];
+				int[] colors = new int[runs.size()];
+				PixelCursor walk = runs.cursor();
+				for (int i = 0; walk.hasNext(); ++i) {
+					keys[i] = walk.nextKey();
+					colors[i] = walk.color();
+				}
+				bst.build(keys, colors, keys.length);
+				runs = null;
+			}
 			bst.put(bst.getRoot(), pix);
+			mask = null;
 		} catch (Exception e) {
 			throw new DuplicatedKeyException("A node in the BST for this figure already stores the same key");
 		}
 	}
 
 	/**
-	 * Helper method. Returns true if the figure has a pixel in the specified
-	 * location and returns false otherwise.
+	 * Replaces the pixels of this figure by the first n pixels with the given
+	 * packed keys (see Location.key()) and colors. The keys must be in increasing
+	 * order, which is the order in which the pixels are found when the image is
+	 * scanned column by column. The pixels are stored in the tree or as runs as
+	 * chosen with setShape, in both cases in linear time. Throws a
+	 * DuplicatedKeyException if two consecutive keys are equal.
 	 * 
-	 * @param p is the specified location.
-	 * @return true if the figure has a pixel in the specified location and false
-	 *         otherwise.
+	 * @param keys   is the array of packed keys, in increasing order
+	 * @param colors is the array of colors
+	 * @param n      is the number of pixels
 	 */
-	private boolean findPixel(Location p) {
-		Pixel found = bst.get(bst.getRoot(), p);
-		if (found != null) {
-			return true;
-		} else {
-			return false;
+	public void setPixels(long[] keys, int[] colors, int n) throws DuplicatedKeyException {
+		PixelRuns built = null;
+		if (!shape.equals("tree")) {
+			built = new PixelRuns(keys, colors, n);
+			if (shape.equals("auto") && (built.bytes() >= (long) n * ArrayBinarySearchTree.NODE_BYTES)) {
+				built = null;
+			}
 		}
+		// The tree is emptied when the pixels are stored as runs
+		bst.build(keys, colors, (built == null) ? n : 0);
+		runs = built;
+		mask = null;
+	}
+
+	/**
+	 * Replaces the pixels of this figure by the given runs. Since runs cannot be
+	 * modified, the same runs, and the bitmask built from them, can be shared by
+	 * all the figures drawn from the same image. The tree of the figure is not
+	 * used while the figure has runs.
+	 * 
+	 * @param runs is the runs of the pixels of the figure
+	 */
+	public void setRuns(PixelRuns runs) {
+		this.runs = runs;
+		mask = null;
+	}
+
+	/**
+	 * Returns the bitmask of the pixels of this figure. If the pixels are stored
+	 * as runs, it is the bitmask kept with the runs; otherwise it is built from
+	 * the tree the first time it is needed after the pixels change.
+	 * 
+	 * @return bitmask of the pixels
+	 */
+	public PixelMask getMask() {
+		if (runs != null) {
+			return runs.getMask();
+		} else if (mask == null) {
+			mask = new PixelMask(bst);
+		}
+		return mask;
 	}
 
 	/**
 	 * Returns true if this figure intersects the one specified in the parameter and
-	 * returns false otherwise.
+	 * returns false otherwise. If both figures are stored as runs, their runs are
+	 * compared column by column; otherwise the bitmasks of the two figures are
+	 * AND-ed word by word over the rows where they overlap, so 64 pixels are
+	 * tested at a time.
 	 * 
 	 * @param obj is the figure being tested for intersection
 	 * @return true if this figure intersects the one specified and false otherwise.
 	 */
 	public boolean intersects(GraphicalFigure obj) {
+		return intersects(obj, null);
+	}
+
+	/**
+	 * Returns true if this figure intersects the one specified in the parameter and
+	 * returns false otherwise, like intersects(obj), but if the enclosing
+	 * rectangles overlap the result of the pixel test is first looked up in the
+	 * given cache, and stored in it if it was not there.
+	 * 
+	 * @param obj   is the figure being tested for intersection
+	 * @param cache is the cache of pixel test results, or null to always test
+	 * @return true if this figure intersects the one specified and false otherwise.
+	 */
+	public boolean intersects(GraphicalFigure obj, CollisionCache cache) {
 		if (intersectsHelper(obj)) {
-			try {
-				Location largest = bst.largest(bst.getRoot()).getLocation();
-
-				for (Location smallest = bst.smallest(bst.getRoot()).getLocation(); smallest
-						.compareTo(largest) == -1; smallest = bst.successor(bst.getRoot(), smallest).getLocation()) {
-					int xValue = smallest.xCoord();
-					int yValue = smallest.yCoord();
-					int xFig = this.getOffset().xCoord();
-					int yFig = this.getOffset().yCoord();
-					int xObj = obj.getOffset().xCoord();
-					int yObj = obj.getOffset().yCoord();
-					Location pixelCoord = new Location(xValue + xFig - xObj, yValue + yFig - yObj);
-					if (obj.findPixel(pixelCoord) == true) {
-						return true;
-					}
-				}
-			} catch (EmptyTreeException e) {
-				return false;
+			int dx = obj.x - this.x;
+			int dy = obj.y - this.y;
+			if (cache == null) {
+				return pixelsIntersect(obj, dx, dy);
+			}
+			int known = cache.get(getMask(), obj.getMask(), dx, dy);
+			if (known >= 0) {
+				return known == 1;
 			}
+			boolean result = pixelsIntersect(obj, dx, dy);
+			cache.put(getMask(), obj.getMask(), dx, dy, result);
+			return result;
 		}
 		return false;
 	}
 
+	/**
+	 * Returns a lower bound on how far this figure and the one specified must move
+	 * towards each other before they can have a pixel in common: the gap between
+	 * the smallest rectangles that hold their pixels along the axis where it is
+	 * largest, or 0 if those rectangles overlap.
+	 * 
+	 * @param obj is the other figure
+	 * @return the separation of the two figures in pixels
+	 */
+	public int separation(GraphicalFigure obj) {
+		PixelMask a = getMask(), b = obj.getMask();
+		if ((a.getWidth() == 0) || (b.getWidth() == 0)) {
+			return Integer.MAX_VALUE;
+		}
+		int ax = this.x + a.getX0(), ay = this.y + a.getY0();
+		int bx = obj.x + b.getX0(), by = obj.y + b.getY0();
+		int gapX = Math.max(bx - (ax + a.getWidth() - 1), ax - (bx + b.getWidth() - 1));
+		int gapY = Math.max(by - (ay + a.getHeight() - 1), ay - (by + b.getHeight() - 1));
+		return Math.max(Math.max(gapX, gapY), 0);
+	}
+
+	/**
+	 * Helper method. Returns true if this figure and the one specified have a
+	 * pixel in common when the specified one is placed at (dx, dy) relative to
+	 * this one.
+	 * 
+	 * @param obj is the figure being tested for intersection
+	 * @param dx  is the x offset of the specified figure minus that of this figure
+	 * @param dy  is the y offset of the specified figure minus that of this figure
+	 * @return true if the figures have a pixel in common and false otherwise
+	 */
+	private boolean pixelsIntersect(GraphicalFigure obj, int dx, int dy) {
+		if ((runs != null) && (obj.runs != null)) {
+			return runs.intersects(obj.runs, dx, dy);
+		}
+		return getMask().intersects(obj.getMask(), dx, dy);
+	}
+
 	/**
 	 * Helper method. Returns true if the enclosing rectangle of the figure
 	 * specified intersects with the enclosing rectangle of this figure and returns
@@ -169,20 +373,13 @@ public class GraphicalFigure implements GraphicalFigureADT {
 	 *         specified and false otherwise.
 	 */
 	private boolean intersectsHelper(GraphicalFigure obj) {
-		Location topLeftObj = obj.getOffset();
-		Location bottomRightObj = new Location(topLeftObj.xCoord() + obj.getWidth(),
-				topLeftObj.yCoord() + obj.getHeight());
-		Location topLeftFig = this.getOffset();
-		Location bottomRightFig = new Location(topLeftFig.xCoord() + this.getWidth(),
-				topLeftFig.yCoord() + this.getHeight());
-
-		if (topLeftFig.xCoord() > bottomRightObj.xCoord()) {
+		if (this.x > obj.x + obj.getWidth()) {
 			return false;
-		} else if (bottomRightFig.xCoord() < topLeftObj.xCoord()) {
+		} else if (this.x + this.getWidth() < obj.x) {
 			return false;
-		} else if (topLeftFig.yCoord() > bottomRightObj.yCoord()) {
+		} else if (this.y > obj.y + obj.getHeight()) {
 			return false;
-		} else if (bottomRightFig.yCoord() < topLeftObj.yCoord()) {
+		} else if (this.y + this.getHeight() < obj.y) {
 			return false;
 		} else {
 			return true;
@@ -29,11 +29,33 @@ public interface GraphicalFigureADT {
 	 */
 	public void setOffset(Location value);
 
+	/*
+	 * Returns the x coordinate of the offset of this figure
+	 */
+	public int getX();
+
+	/*
+	 * Returns the y coordinate of the offset of this figure
+	 */
+	public int getY();
+
+	/*
+	 * Changes the offset of this figure to (x, y) without creating a Location.
+	 */
+	public void setOffset(int x, int y);
+
 	/*
 	 * Change the type of this figure to the specified value.
 	 */
 	public void setType(String t);
 
+	/*
+	 * Chooses how setPixels stores the pixels of this figure: "tree", "runs"
+	 * (runs of consecutive pixels of each column) or "auto" (whichever takes
+	 * less memory).
+	 */
+	public void setShape(String shape);
+
 	/*
 	 * Adds the given Pixel object into the binary search tree associated with
 	 * this figure. A DuplicatedKeyException is thrown if the figure already has
@@ -41,6 +63,19 @@ public interface GraphicalFigureADT {
 	 */
 	public void addPixel(Pixel pix) throws DuplicatedKeyException;
 
+	/*
+	 * Replaces the pixels of this figure by the first n pixels with the given
+	 * packed keys and colors, which must be in increasing key order. A
+	 * DuplicatedKeyException is thrown if two of the keys are equal.
+	 */
+	public void setPixels(long[] keys, int[] colors, int n) throws DuplicatedKeyException;
+
+	/*
+	 * Replaces the pixels of this figure by the given runs, which may be shared
+	 * with other figures.
+	 */
+	public void setRuns(PixelRuns runs);
+
 	/*
 	 * Returns true if this figure intersects the one specified in the
 	 * parameter; it returns false otherwise.
@@ -7,21 +7,17 @@ import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.StringTokenizer;
+import java.util.Random;
 
-import javax.imageio.ImageIO;
 import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
+import javax.swing.Timer;
 import javax.swing.WindowConstants;
 
 /* Create the graphical user interface */
-public class Gui extends JFrame implements ActionListener, KeyListener {
+public class Gui extends JFrame implements ActionListener, KeyListener, WorldListener, FrameListener {
 
 	private static final long serialVersionUID = 1;
 
@@ -34,12 +30,9 @@ public class Gui extends JFrame implements ActionListener, KeyListener {
 
 	private Color backgroundColor = new Color(205, 200, 205);
 
-	private final int TRANSPARENT = 0xCDC8CD; // Background color with
-												// transparency
-	private final int SOLID = 0xFFCDC8CD; // Background color
-
 	private final int MENU_HEIGHT = 74; // Height of buttons toolbar
 	private final int BORDER = 9; // Border width
+	private final int BLINK = 200; // Milliseconds a killed user figure is shown or hidden
 
 	// private final int gridSize = 50;
 
@@ -47,28 +40,26 @@ public class Gui extends JFrame implements ActionListener, KeyListener {
 	// moves every time that an arrow key
 	// is pressed
 	private int delay = 300; // Time between figure movements
-	private boolean toWait = true; // Movement of figures is paused
-	private MoveFigure mover;
+	private World world; // Figures of the game
+	private Simulation simulation; // Rules of the game
+	private volatile GameLoop loop; // Plays the game, paused until "Start"; set last, so the
+	                                // game is ready once it is not null
 
 	private int windowWidth; // Dimensions of playing window
 	private int windowHeight;
 
 	private final String MOBILE_FIGURE = "user"; // Type of figure that user can
 													// move
-	private final String TARGET = "target"; // Type of figure that can be destroyed
-											// by the mobile figures
-	private final String FIGURE_KILLED = "killed";// Type of figure that has been killed
-	private final int MAX_FIGURES = 50; // Maximum number of figures to display
-	private final int THRESHOLD = 225; // transparent pixels have RGB values >= threshold
-
-	private boolean increaseStep = false; // Set to true to move computer figures
-	                                      // with longer steps
-	private int numMobile = 0; // Number of figures that user can move
-	private int[] mobileFigs = new int[MAX_FIGURES];
+	private final String COMPUTER = "computer"; // Type of figure moved by the
+												// computer
+
 	private int numFigures = 0;
-	GraphicalFigure[] figs = new GraphicalFigure[MAX_FIGURES]; // Figures are stored in this array
-	BufferedImage[] imgs = new BufferedImage[MAX_FIGURES]; // Information needed to display the figures
-	BufferedImage[] erased = new BufferedImage[MAX_FIGURES]; // Info needed to erase the figures
+	GraphicalFigure[] figs; // Figures are stored in this array
+	int[] drawnX, drawnY; // Where the computer figures are drawn
+	int[] baseX, baseY; // Where they were before their last move
+	long[] movedIn; // Tick of their last move
+	BufferedImage[] imgs; // Information needed to display the figures
+	BufferedImage[] erased; // Info needed to erase the figures
 
 	/* ============================================== */
 	public Gui(int width, int height, String name) {
@@ -120,7 +111,12 @@ public class Gui extends JFrame implements ActionListener, KeyListener {
 			Thread.sleep(2000);
 
 			readFigures(name);
-			mover = new MoveFigure(this);
+			world = new World(displayWidth(), displayHeight(), figs, numFigures);
+			world.setListener(this);
+			simulation = new Simulation(world, new Random());
+			if (Integer.getInteger("pacman.tickRate") != null)
+				delay = 1000 / Math.max(1, Integer.getInteger("pacman.tickRate"));
+			loop = new GameLoop(simulation, this, delay);
 			System.out.println("Ready.");
 		} catch (Exception e) {
 			System.out.println("Error starting program: " + e.getMessage());
@@ -131,135 +127,37 @@ public class Gui extends JFrame implements ActionListener, KeyListener {
 	private void readFigures(String name) {
 		/* ======================================= */
 		/*
-		 * Read graphical objects from the input file. Each line of the input file has the
-		 * form: x y type file where - (x,y) is the coordinate of the upper left
-		 * corner of where the figure will be drawn, - type = "fixed" : fixed
-		 * figure type = "user" : figure moved by user type = "computer" :
-		 * figure moved by computer type = "target" : target figure - file is
-		 * the name of an image file in .bmp, .jpeg, or .gif format
+		 * Read graphical objects from the input file (see FigureReader) and draw
+		 * them
 		 */
 
-		StringTokenizer tokenizer;
-		int x, y, width, height;
-		String type;
-		String imagefile;
-		BufferedImage im;
-
 		try {
-			// Open the input file
-			BufferedReader inputFig = new BufferedReader(new InputStreamReader(new FileInputStream(new File(name))));
-			String buff = inputFig.readLine();
-
-			numFigures = 0;
-
-			while (buff != null) {
-
-				/* Read (x,y) and name of image file */
-				tokenizer = new StringTokenizer(buff);
-				x = Integer.parseInt(tokenizer.nextToken());
-				y = Integer.parseInt(tokenizer.nextToken());
-				type = tokenizer.nextToken();
-				imagefile = tokenizer.nextToken();
-
-				if (type.equals(MOBILE_FIGURE))
-					mobileFigs[numMobile++] = numFigures;
-
-				im = ImageIO.read(new File(imagefile));
-
-				width = im.getWidth();
-				height = im.getHeight();
-
-				imgs[numFigures] = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
-				erased[numFigures] = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
-
-				figs[numFigures] = new GraphicalFigure(numFigures, width, height, type, new Location(x, y));
-
-				insertPoints(im, numFigures, 0, 0, width - 1, height - 1, width);
-
-				++numFigures;
-				drawFigure(figs[numFigures - 1]); // numFigures must be equal to
-				                                  // the number of existing graphical objects
-
-				if (numFigures > MAX_FIGURES) {
-					System.out.println("Maximum number of figures is " + MAX_FIGURES);
-					break;
-				}
-
-				buff = inputFig.readLine();
-
+			FigureReader reader = new FigureReader(name);
+			numFigures = reader.getNumFigures();
+			figs = reader.getFigures();
+			imgs = new BufferedImage[numFigures];
+			erased = new BufferedImage[numFigures];
+			drawnX = new int[numFigures];
+			drawnY = new int[numFigures];
+			baseX = new int[numFigures];
+			baseY = new int[numFigures];
+			movedIn = new long[numFigures];
+			for (int i = 0; i < numFigures; ++i) {
+				imgs[i] = reader.getSprite(i).getImage();
+				erased[i] = reader.getSprite(i).getErased();
+				drawnX[i] = figs[i].getX();
+				drawnY[i] = figs[i].getY();
+				movedIn[i] = -1;
+				drawFigure(figs[i]);
 			}
-
-			inputFig.close();
 		} catch (IOException e) {
 			System.out.println("Error opening file. " + e.getMessage());
 		} catch (DuplicatedKeyException e) {
 			System.out.println("Error while creating figures. " + e.getMessage());
-		} catch (Exception e) {
-			System.out.println(e.getMessage());
 		}
 
 	}
 
-	/*
-	 * ========================================================================
-	 */
-	private void insertPoints(BufferedImage im, int nfig, int xf, int yf, int xl, int yl, int width)
-			throws DuplicatedKeyException {
-		/*
-		 * =====================================================================
-		 */
-		/* Insert the pixels into the data structure to represent the graphical object */
-		int m, xm, ym, rgb;
-		int xm1, xm2, ym1, ym2;
-
-		/*
-		 * Perform a binary splitting of the pixels and insert them in that
-		 * order in the binary search tree
-		 */
-		if ((yf < yl) || ((yf == yl) && (xf <= xl))) {
-			m = (yf * width + xf + yl * width + xl) / 2; // Pixel in the middle
-															// of figure
-			xm = m % width; // Coordinates of the middle pixel
-			ym = m / width;
-			rgb = im.getRGB(xm, ym); // Color of middle pixel
-			if (((rgb & 0xff) >= THRESHOLD) && (((rgb & 0xff00) >> 8) >= THRESHOLD)
-					&& (((rgb & 0xff0000) >> 16) >= THRESHOLD))
-				rgb = rgb & 0x00ffffff; // Transparent pixels are not inserted in the tree
-			else {
-				Pixel pix = new Pixel(new Location(xm, ym), rgb);
-				figs[nfig].addPixel(pix);
-			}
-			imgs[nfig].setRGB(xm, ym, rgb);
-
-			if ((rgb & 0xff000000) == 0) // Graphical object of same color as background
-				// used to erase the current graphical object
-				erased[nfig].setRGB(xm, ym, TRANSPARENT);
-			else
-				erased[nfig].setRGB(xm, ym, SOLID);
-
-			// Split the gaphical object around the middle pixel
-			if (xm > 0) {
-				xm1 = xm - 1;
-				ym1 = ym;
-			} else {
-				xm1 = width - 1;
-				ym1 = ym - 1;
-			}
-			if (xm < width - 1) {
-				xm2 = xm + 1;
-				ym2 = ym;
-			} else {
-				xm2 = 0;
-				ym2 = ym + 1;
-			}
-
-			// Insert the pixels in each half of the graphical object
-			insertPoints(im, nfig, xf, yf, xm1, ym1, width);
-			insertPoints(im, nfig, xm2, ym2, xl, yl, width);
-
-		}
-	}
-
 	/* ==================== */
 	public int displayWidth() {
 		/* ==================== */
@@ -293,21 +191,29 @@ public class Gui extends JFrame implements ActionListener, KeyListener {
 	{
 		String s = (String) e.getActionCommand();
 
+		if (loop == null) {
+			/* The figures are not read yet, or could not be: only "Exit" works */
+			if (s.equals("Exit")) {
+				dispose();
+				System.exit(0);
+			}
+			return;
+		}
+
 		if (s.equals("Start"))
 			Start();
 		else if (s.equals("Pause"))
-			toWait = true;
+			loop.pause();
 		else if (s.equals("Slower"))
-			delay += 100;
-		else if (s.equals("Faster")) {
-			if (delay >= 100)
-				delay -= 100;
-			else
-				increaseStep = true;
-		} else if (s.equals("Re-paint")) {
+			Slower();
+		else if (s.equals("Faster"))
+			Faster();
+		else if (s.equals("Re-paint")) {
 			for (int i = 0; i < numFigures; ++i)
 				drawFigure(figs[i]);
 		} else if (s.equals("Exit")) {
+			loop.shutdown();
+			world.report();
 			dispose();
 			System.exit(0);
 		}
@@ -319,70 +225,73 @@ public class Gui extends JFrame implements ActionListener, KeyListener {
 	private void Start() {
 		/* ====================== */
 		/* Start game */
-		toWait = false;
+		loop.start();
 
 	}
 
-	/* ================== */
-	public boolean Wait() {
-		/* ================== */
-		/* Returns true if user clicked on the "Faster" button */
-		try {
-			if (toWait) {
-				/* Game is in pause mode */
-				while (toWait)
-					Thread.sleep(1000);
-			} else if (delay > 0)
-				Thread.sleep(delay);
-		} catch (Exception e) {
-			System.out.println(e.getMessage());
-		}
-		if (increaseStep) {
-			increaseStep = false;
-			return true;
+	/* ====================== */
+	private void Slower() {
+		/* ====================== */
+		/* Make the ticks of the game longer */
+		delay += 100;
+		loop.setTickPeriod(delay);
+	}
+
+	/* ====================== */
+	private void Faster() {
+		/* ====================== */
+		/*
+		 * Make the ticks of the game shorter or, once they are as short as they
+		 * get, the moves of the computer figures longer
+		 */
+		if (delay >= 100) {
+			delay -= 100;
+			loop.setTickPeriod(delay);
 		} else
-			return false;
+			loop.execute(new Runnable() {
+				public void run() {
+					simulation.increaseStep();
+				}
+			});
 	}
 
 	/* ======================================= */
 	public void keyPressed(KeyEvent e) {
 		/* ======================================= */
-		int b, i;
 		int c = e.getKeyCode();
 
-		/* Move user figures depending on which key was pressed */
-		for (i = 0; i < numMobile; ++i) {
-			b = -1;
-			if (!(figs[mobileFigs[i]].getType()).equals(FIGURE_KILLED)) {
-				if (c == KeyEvent.VK_UP)
-					b = mover.moveUp(figs, numFigures, mobileFigs[i], step);
-				else if (c == KeyEvent.VK_DOWN)
-					b = mover.moveDown(figs, numFigures, mobileFigs[i], step);
-				else if (c == KeyEvent.VK_LEFT)
-					b = mover.moveLeft(figs, numFigures, mobileFigs[i], step);
-				else if (c == KeyEvent.VK_RIGHT)
-					b = mover.moveRight(figs, numFigures, mobileFigs[i], step);
-				else if (c == KeyEvent.VK_B)
-					Start();
-				else if (c == KeyEvent.VK_X) {
-					dispose();
-					System.exit(0);
-				} else if (c == KeyEvent.VK_F) {
-					if (delay >= 100)
-						delay -= 100;
-					else
-						increaseStep = true;
-				} else if (c == KeyEvent.VK_S)
-					delay += 100;
-			}
-			if (b >= 0) { // There was a collision
-				if (figs[b].getType().equals(TARGET)) {
-					eraseFigure(figs[b]);
-					figs[b].setType(FIGURE_KILLED);
-					figs[b].setOffset(new Location(-1000, -1000));
-				}
+		if (loop == null) {
+			/* The figures are not read yet, or could not be: only X works */
+			if (c == KeyEvent.VK_X) {
+				dispose();
+				System.exit(0);
 			}
+			return;
 		}
+
+		/*
+		 * Move user figures depending on which key was pressed, at the start of
+		 * the next tick
+		 */
+		if (c == KeyEvent.VK_UP)
+			simulation.requestMove(0, -step);
+		else if (c == KeyEvent.VK_DOWN)
+			simulation.requestMove(0, step);
+		else if (c == KeyEvent.VK_LEFT)
+			simulation.requestMove(-step, 0);
+		else if (c == KeyEvent.VK_RIGHT)
+			simulation.requestMove(step, 0);
+		else if (c == KeyEvent.VK_B)
+			Start();
+		else if (c == KeyEvent.VK_X) {
+			loop.shutdown();
+			world.report();
+			dispose();
+			System.exit(0);
+		} else if (c == KeyEvent.VK_F)
+			Faster();
+		else if (c == KeyEvent.VK_S)
+			Slower();
 	}
 
 	/* ======================================= */
@@ -400,18 +309,11 @@ public class Gui extends JFrame implements ActionListener, KeyListener {
 		/* ======================================= */
 		/* Draw the given figure at its current Location */
 
-		Location pos;
-		try {
-			for (int i = 0; i < numFigures; ++i) {
-				if (figs[i].getId() == (f.getId())) {
-					pos = figs[i].getOffset();
-					display.drawImage(imgs[i], pos.xCoord(), pos.yCoord(), null);
-					Thread.sleep(10);
-					return;
-				}
+		for (int i = 0; i < numFigures; ++i) {
+			if (figs[i].getId() == (f.getId())) {
+				display.drawImage(imgs[i], figs[i].getX(), figs[i].getY(), null);
+				return;
 			}
-		} catch (Exception e) {
-			System.out.println(e.getMessage());
 		}
 
 	}
@@ -421,28 +323,126 @@ public class Gui extends JFrame implements ActionListener, KeyListener {
 		/* ======================================= */
 		/* Erase the given graphical object */
 
-		Location pos;
+		for (int i = 0; i < numFigures; ++i) {
+			if (figs[i].getId() == (f.getId())) {
+				display.drawImage(erased[i], figs[i].getX(), figs[i].getY(), null);
+				return;
+			}
+		}
+
+	}
+
+	/* ======================================= */
+	public void figureMoved(GraphicalFigure f, int fromX, int fromY) {
+		/* ======================================= */
+		/*
+		 * Erase the given figure where it was and draw it where it is. Computer
+		 * figures are drawn by the frames instead, between where they were and
+		 * where they are
+		 */
 
 		for (int i = 0; i < numFigures; ++i) {
 			if (figs[i].getId() == (f.getId())) {
-				pos = figs[i].getOffset();
-				display.drawImage(erased[i], pos.xCoord(), pos.yCoord(), null);
+				if (f.getType().equals(COMPUTER)) {
+					if (movedIn[i] != simulation.getTicks()) {
+						baseX[i] = fromX;
+						baseY[i] = fromY;
+						movedIn[i] = simulation.getTicks();
+					}
+					return;
+				}
+				display.drawImage(erased[i], fromX, fromY, null);
+				break;
+			}
+		}
+		drawFigure(f);
+	}
+
+	/* ======================================= */
+	public void frame(double alpha) {
+		/* ======================================= */
+		/*
+		 * Draw each computer figure that moved in the last tick the given
+		 * fraction of the way from where it was to where it is, and the others
+		 * where they are
+		 */
+
+		long last = simulation.getTicks() - 1;
+		for (int i = 0; i < numFigures; ++i) {
+			if (!figs[i].getType().equals(COMPUTER))
+				continue;
+			int x = figs[i].getX(), y = figs[i].getY();
+			if (movedIn[i] == last) {
+				x = baseX[i] + (int) Math.round(alpha * (x - baseX[i]));
+				y = baseY[i] + (int) Math.round(alpha * (y - baseY[i]));
+			}
+			if ((x != drawnX[i]) || (y != drawnY[i])) {
+				display.drawImage(erased[i], drawnX[i], drawnY[i], null);
+				display.drawImage(imgs[i], x, y, null);
+				drawnX[i] = x;
+				drawnY[i] = y;
+			}
+		}
+	}
+
+	/* ======================================= */
+	public void figureKilled(GraphicalFigure f) {
+		/* ======================================= */
+		/*
+		 * Erase the given figure. User figures blink 5 times first, where they
+		 * were killed; the blinks are drawn by a Swing timer, so the game loop
+		 * goes on meanwhile
+		 */
+
+		if (!f.getType().equals(MOBILE_FIGURE)) {
+			eraseFigure(f);
+			return;
+		}
+		for (int i = 0; i < numFigures; ++i) {
+			if (figs[i].getId() == (f.getId())) {
+				blink(i, figs[i].getX(), figs[i].getY());
 				return;
 			}
 		}
+	}
+
+	/* ======================================= */
+	private void blink(final int i, final int x, final int y) {
+		/* ======================================= */
+		/*
+		 * Draw and erase figure figs[i] at (x, y) every BLINK milliseconds, 5
+		 * times, ending erased
+		 */
+
+		Timer timer = new Timer(BLINK, new ActionListener() {
+			private int shown = 0; // times drawn or erased so far
 
+			public void actionPerformed(ActionEvent e) {
+				display.drawImage((shown % 2 == 0) ? imgs[i] : erased[i], x, y, null);
+				if (++shown == 10)
+					((Timer) e.getSource()).stop();
+			}
+		});
+		timer.setInitialDelay(0);
+		timer.start();
+	}
+
+	/* =========================== */
+	public World getWorld() {
+		/* =========================== */
+		return world;
 	}
 
 	/* =========================== */
-	public GraphicalFigure[] getFigures() {
+	public Simulation getSimulation() {
 		/* =========================== */
-		return figs;
+		return simulation;
 	}
 
 	/* =========================== */
-	public int getNumFigures() {
+	public GameLoop getLoop() {
 		/* =========================== */
-		return numFigures;
+		return loop;
 	}
 
 }
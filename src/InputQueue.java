@@ -0,0 +1,101 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Queue of the moves asked for by the user, from any number of threads, for
+ * the one thread that plays the game. It takes no lock: a move is added with a
+ * compare-and-set on the head of a linked stack, and all the moves added so
+ * far are taken at once by swapping the head for an empty stack, so no thread
+ * ever waits for another. Moves taken together are put back in the order in
+ * which they were added, and consecutive moves in the same direction are
+ * coalesced into a single longer move.
+ * 
+ * @author Bazillah Zargar
+ */
+public class InputQueue {
+
+	private final AtomicReference<Node> head = new AtomicReference<Node>(); // last move added, or null
+	private int[] dx = new int[16], dy = new int[16]; // moves taken by the last drain, oldest first
+	private int count; // number of moves taken by the last drain
+
+	/**
+	 * Adds a move. It may be called from any thread.
+	 * 
+	 * @param dx is the move to the right
+	 * @param dy is the move down
+	 */
+	public void add(int dx, int dy) {
+		Node node = new Node(dx, dy);
+		do
+			node.next = this.head.get();
+		while (!this.head.compareAndSet(node.next, node));
+	}
+
+	/**
+	 * Takes all the moves added so far, oldest first, coalescing consecutive
+	 * moves in the same direction. It must only be called by the thread that
+	 * plays the game; the moves taken are read with getDx and getDy.
+	 * 
+	 * @return number of moves taken
+	 */
+	public int drain() {
+		Node node = this.head.getAndSet(null);
+		int n = 0;
+		for (Node p = node; p != null; p = p.next)
+			++n;
+		if (n > this.dx.length) {
+			this.dx = Arrays.copyOf(this.dx, Math.max(n, 2 * this.dx.length));
+			this.dy = Arrays.copyOf(this.dy, this.dx.length);
+		}
+		/* The stack has the newest move first, so it is copied from the end */
+		for (int k = n - 1; k >= 0; --k, node = node.next) {
+			this.dx[k] = node.dx;
+			this.dy[k] = node.dy;
+		}
+		this.count = 0;
+		for (int k = 0; k < n; ++k)
+			if ((this.count > 0) && (Integer.signum(this.dx[k]) == Integer.signum(this.dx[this.count - 1]))
+					&& (Integer.signum(this.dy[k]) == Integer.signum(this.dy[this.count - 1]))) {
+				this.dx[this.count - 1] += this.dx[k];
+				this.dy[this.count - 1] += this.dy[k];
+			} else {
+				this.dx[this.count] = this.dx[k];
+				this.dy[this.count++] = this.dy[k];
+			}
+		return this.count;
+	}
+
+	/**
+	 * Returns the move to the right of the k-th move taken by the last drain.
+	 * 
+	 * @param k is the index of the move
+	 * @return move to the right
+	 */
+	public int getDx(int k) {
+		return this.dx[k];
+	}
+
+	/**
+	 * Returns the move down of the k-th move taken by the last drain.
+	 * 
+	 * @param k is the index of the move
+	 * @return move down
+	 */
+	public int getDy(int k) {
+		return this.dy[k];
+	}
+
+	/* =================================================================== */
+	private static class Node {
+		/* =================================================================== */
+		/* A move in the stack, linked to the move added before it */
+
+		private final int dx, dy;
+		private Node next;
+
+		Node(int dx, int dy) {
+			this.dx = dx;
+			this.dy = dy;
+		}
+	}
+}
@@ -39,6 +39,50 @@ public class Location {
 		return this.yCoord;
 	}
 
+	/**
+	 * Returns the key of this location packed into a long. Keys compare as
+	 * primitive longs in the same column order as compareTo.
+	 * 
+	 * @return packed key
+	 */
+	public long key() {
+		return key(this.xCoord, this.yCoord);
+	}
+
+	/**
+	 * Packs the given coordinates into a long key. The x coordinate goes in the
+	 * high 32 bits and the y coordinate, with its sign bit flipped so that it
+	 * orders correctly as an unsigned value, in the low 32 bits. Thus for any two
+	 * locations p and q, p.key() < q.key() if and only if p.compareTo(q) == -1.
+	 * 
+	 * @param x is the x coordinate
+	 * @param y is the y coordinate
+	 * @return packed key
+	 */
+	public static long key(int x, int y) {
+		return ((long) x << 32) | ((y ^ Integer.MIN_VALUE) & 0xffffffffL);
+	}
+
+	/**
+	 * Returns the x coordinate stored in the given packed key.
+	 * 
+	 * @param key is a key built by key(x, y)
+	 * @return x coordinate
+	 */
+	public static int keyX(long key) {
+		return (int) (key >> 32);
+	}
+
+	/**
+	 * Returns the y coordinate stored in the given packed key.
+	 * 
+	 * @param key is a key built by key(x, y)
+	 * @return y coordinate
+	 */
+	public static int keyY(long key) {
+		return ((int) key) ^ Integer.MIN_VALUE;
+	}
+
 	/**
 	 * Compares this location with p using column order
 	 * 
@@ -0,0 +1,16 @@
+/**
+ * Tests two pixel masks for overlap. PixelMask.intersects has a portable
+ * implementation; other implementations, such as the one built on the Java
+ * Vector API, are loaded at run time when they are available.
+ * 
+ * @author Bazillah Zargar
+ */
+public interface MaskKernel {
+
+	/*
+	 * Returns true if masks a and b have a pixel in common in rows rowFrom to
+	 * rowTo of a when the figure of b is placed at (dx, dy) relative to the
+	 * figure of a.
+	 */
+	public boolean intersects(PixelMask a, PixelMask b, int dx, int dy, int rowFrom, int rowTo);
+}
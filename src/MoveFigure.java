@@ -1,147 +1,426 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+/**
+ * Moves the figures of a World, each as far as it can go towards where it is
+ * asked to move, stopping it at the window's border or against the first
+ * figure it meets. The figures it could meet are found with the broadphase of
+ * the world and the way is tested with the mask of the figure swept along it.
+ * Figures can be moved one at a time or in batches, whose moves are first
+ * tested against the fixed figures in parallel. Offsets are changed in place
+ * and the world is told of every figure that moves.
+ * 
+ * @author Bazillah Zargar
+ */
 public class MoveFigure {
 
-	private Gui environment; // Graphical user interface
+	private static final String FIXED = "fixed"; // Type of figures that never move
+	private static final int WALL = -3; // A figure of a batch was stopped by a fixed figure
+	private static final int CHUNKS = 4; // Tasks per thread when a batch is swept in parallel
+	private static final int WALLS_ONLY = 0; // A sweep tests only the mask of the fixed figures
+	private static final int MOVING_ONLY = 1; // A sweep tests only the figures that are not fixed
+	private static final int EVERYTHING = 2; // A sweep tests all the figures
+	private static final int[] JUST_WALLS = { -1 }; // Blockers of a sweep of the mask of the fixed figures
+
+	private World world; // Figures of the game, told of the figures that move
+	private int width; // Dimensions of the area where figures move
+	private int height;
+	private CollisionCache cache; // Results of recent pixel tests between figures
+	private SeparationTracker separations; // Pairs of figures known to be apart
+	private BroadphaseADT broadphase; // Finds the figures near the one being moved
+	private int[] nearby; // Indices of the figures near the one being moved
+	private int[] blockers; // Those that block its way, -1 standing for the mask of the fixed figures
+	private PixelMask walls; // Pixels of all the fixed figures
+	private int threads; // Number of threads that sweep the moves of a batch
+	private ForkJoinPool pool; // Those threads, null until the first batch or if there is only one, in which case batches are moved one figure at a time
+	private Sweep[] sweeps = new Sweep[0]; // Tasks that sweep parts of a batch
+	private Batch batch = new Batch(); // Task that runs all the sweeps
+	private GraphicalFigure[] batchFigs; // Figures of the batch being moved
+	private int[] batchMovers; // Indices of the figures of the batch
+	private int[] batchDx, batchDy; // Moves of the figures of the batch
+	private int[] reaches = new int[0]; // Steps each figure of the batch can make before its first stop
+	private int[] stops = new int[0]; // What stops each figure of the batch: -2 nothing, -1 border or WALL
+
+	/* =========================== */
+	public MoveFigure(World world) {
+		/* =========================== */
+		this.world = world;
+		this.width = world.getWidth();
+		this.height = world.getHeight();
+		this.cache = world.getCollisionCache();
+		this.separations = world.getSeparations();
+		this.broadphase = world.getBroadphase();
+		this.nearby = new int[world.getNumFigures()];
+		this.blockers = new int[world.getNumFigures() + 1];
+		this.walls = world.getWalls();
+		setThreads(Integer.getInteger("pacman.threads", Runtime.getRuntime().availableProcessors()));
+	}
 
 	/* =========================== */
-	public MoveFigure(Gui env) {
+	public void setThreads(int threads) {
 		/* =========================== */
-		environment = env;
+		/*
+		 * Choose how many threads sweep the moves of a batch against the fixed
+		 * figures. With one thread the sweeps run in the calling thread.
+		 */
+		if (pool != null)
+			pool.shutdown();
+		this.threads = threads;
+		pool = null;
+		sweeps = new Sweep[(threads > 1) ? threads * CHUNKS : 0];
+		for (int c = 0; c < sweeps.length; ++c)
+			sweeps[c] = new Sweep(c);
 	}
 
 	/* ============================================ */
-	public int moveLeft(GraphicalFigure[] figs, int numFigures, int fignum, int step)
+	public int move(GraphicalFigure[] figs, int numFigures, int fignum, int dx, int dy)
 	/* ============================================ */
 	/*
-	 * Move the graphical object specified by the second argument to the left. Return true
-	 * if the graphical object could move.
+	 * Move the graphical object specified by the third argument as far as it can
+	 * go towards dx pixels to the right and dy pixels down, one pixel at a time
+	 * along the straight line. The figures it could meet on the way are found
+	 * with a single query for the rectangle swept by the move, and the way is
+	 * tested against them with the mask of the object swept along it (see
+	 * free). Return -2 if the object moved the whole way, -1 if it stopped at
+	 * the window's border, or the index of the graphical object it stopped
+	 * against. The offsets are changed in place, so no objects are created.
 	 */
 	{
-		Location curr, next;
-		int newx;
-
-		curr = figs[fignum].getOffset();
-		if (curr.xCoord() < step)
-			return -1; // Graphical object reached left border
-		else
-			newx = curr.xCoord() - step;
-		next = new Location(newx, curr.yCoord());
-
-		// Verify that graphical obejcts do not overlap
-		figs[fignum].setOffset(next);
-		for (int i = 0; i < numFigures; ++i)
-			if ((i != fignum) && (figs[fignum].intersects(figs[i]))) {
-				figs[fignum].setOffset(curr);
-				return i;
-			}
+		int currx = figs[fignum].getX(), curry = figs[fignum].getY();
+		int steps = Math.max(Math.abs(dx), Math.abs(dy));
+		int reach = inside(figs[fignum], dx, dy, steps);
+		int n = broadphase.candidates(figs, fignum, dx, dy, nearby);
+		int moved = free(figs, numFigures, fignum, n, dx, dy, reach, EVERYTHING);
+		int code = (reach < steps) ? -1 : -2; // The border stops the object, if anything does
+		if (moved < reach)
+			code = contact(figs, numFigures, fignum, n, dx, dy, moved + 1);
+		place(figs, fignum, currx, curry, dx, dy, moved, steps);
+		return code;
+	}
 
-		// Move graphical object to its new Location
-		figs[fignum].setOffset(curr);
-		environment.eraseFigure(figs[fignum]);
-		figs[fignum].setOffset(next);
-		environment.drawFigure(figs[fignum]);
-		return -2;
+	/* ============================================ */
+	public void moveAll(GraphicalFigure[] figs, int numFigures, int[] movers, int count, int[] dx, int[] dy,
+			int[] codes)
+	/* ============================================ */
+	/*
+	 * Move the graphical objects movers[0], ..., movers[count-1], in that
+	 * order, each as far as it can go towards dx[k] pixels to the right and
+	 * dy[k] pixels down, and store in codes[k] what move would have returned.
+	 * First the moves are swept against the border and the mask of the fixed
+	 * figures, which do not move, in parallel. Then the figures are moved one
+	 * by one in the given order, testing only the figures that move, so that
+	 * the results are the same as those of calling move for each of them
+	 * whatever the number of threads. With a single thread nothing is gained
+	 * by the two passes, so move is called for each figure instead.
+	 */
+	{
+		if ((threads > 1) && (pool == null))
+			pool = new ForkJoinPool(threads);
+		if (pool == null) {
+			for (int k = 0; k < count; ++k)
+				codes[k] = move(figs, numFigures, movers[k], dx[k], dy[k]);
+			return;
+		}
+		if (reaches.length < count) {
+			reaches = new int[count];
+			stops = new int[count];
+		}
+		for (int k = 0; k < count; ++k)
+			figs[movers[k]].getMask(); // Build the masks before they are shared between threads
+		batchFigs = figs;
+		batchMovers = movers;
+		batchDx = dx;
+		batchDy = dy;
+		batch.reinitialize();
+		batch.count = count;
+		pool.invoke(batch);
+		for (int k = 0; k < count; ++k)
+			codes[k] = finish(figs, numFigures, movers[k], dx[k], dy[k], reaches[k], stops[k]);
+		batchFigs = null;
 	}
 
 	/* ============================================ */
-	public int moveRight(GraphicalFigure[] figs, int numFigures, int fignum, int step)
+	private void sweep(int from, int to)
 	/* ============================================ */
 	/*
-	 * Move the graphical object specified by the second argument to the right. Return true
-	 * if the graphical obejct could move.
+	 * Find how many steps each of the figures from to to-1 of the batch can make
+	 * before it meets the border or a fixed figure, and which one it meets. Only
+	 * reads the figures, so parts of a batch can be swept at the same time.
 	 */
 	{
-		Location curr, next;
-		int newx;
-
-		curr = figs[fignum].getOffset();
-		if (curr.xCoord() > (environment.displayWidth() - figs[fignum].getWidth() - step))
-			return -1; // Graphical object reached right border
-		else
-			newx = curr.xCoord() + step;
-		next = new Location(newx, curr.yCoord());
-
-		// Check that graphical objects do not overlap
-		figs[fignum].setOffset(next);
-		for (int i = 0; i < numFigures; ++i)
-			if ((i != fignum) && (figs[fignum].intersects(figs[i]))) {
-				figs[fignum].setOffset(curr);
-				return i;
-			}
+		for (int k = from; k < to; ++k) {
+			GraphicalFigure fig = batchFigs[batchMovers[k]];
+			int dx = batchDx[k], dy = batchDy[k];
+			int steps = Math.max(Math.abs(dx), Math.abs(dy));
+			int border = inside(fig, dx, dy, steps);
+			reaches[k] = free(batchFigs, 0, batchMovers[k], 0, dx, dy, border, WALLS_ONLY);
+			stops[k] = (reaches[k] < border) ? WALL : (border < steps) ? -1 : -2;
+		}
+	}
 
-		// Move graphical object to its new Location
-		figs[fignum].setOffset(curr);
-		environment.eraseFigure(figs[fignum]);
-		figs[fignum].setOffset(next);
-		environment.drawFigure(figs[fignum]);
-		return -2;
+	/* ============================================ */
+	private int finish(GraphicalFigure[] figs, int numFigures, int fignum, int dx, int dy, int reach, int stop)
+	/* ============================================ */
+	/*
+	 * Move a figure of a batch that can make reach steps before it meets the
+	 * border or a fixed figure, testing on the way only the figures that move,
+	 * and return what move would have returned.
+	 */
+	{
+		int currx = figs[fignum].getX(), curry = figs[fignum].getY();
+		int steps = Math.max(Math.abs(dx), Math.abs(dy));
+		int n = broadphase.candidates(figs, fignum, dx, dy, nearby);
+		int moved = free(figs, numFigures, fignum, n, dx, dy, reach, MOVING_ONLY);
+		int code = stop;
+		if (moved < reach)
+			code = contact(figs, numFigures, fignum, n, dx, dy, moved + 1);
+		else if (stop == WALL)
+			// Find the figure met first, fixed or not, at the step where a fixed one is met
+			code = contact(figs, numFigures, fignum, n, dx, dy, reach + 1);
+		place(figs, fignum, currx, curry, dx, dy, moved, steps);
+		return code;
 	}
 
 	/* ============================================ */
-	public int moveDown(GraphicalFigure[] figs, int numFigures, int fignum, int step)
+	private int free(GraphicalFigure[] figs, int numFigures, int fignum, int n, int dx, int dy, int reach, int mode)
 	/* ============================================ */
 	/*
-	 * Move the graphical object specified by the second argument t the right. Return true
-	 * if the graphical object could move.
+	 * Return the largest number of steps, up to reach, that the figure can make
+	 * towards (dx, dy) without meeting what the mode says to test. The whole
+	 * way is tested at once with the mask of the figure swept along it. Only if
+	 * it is blocked is the first blocked step searched for, testing only what
+	 * blocked the whole way: a way that is blocked stays blocked when it is made
+	 * longer, and the figure overlaps nothing where it starts, so the free
+	 * steps can be found by halving. Along a straight line, the steps after the
+	 * first free ones are those of a shorter move from further on, so the
+	 * search only needs the masks swept over 1, 2, 4, ... steps.
 	 */
 	{
-		Location curr, next;
-		int newy;
-
-		curr = figs[fignum].getOffset();
-		if (curr.yCoord() > (environment.displayHeight() - figs[fignum].getHeight() - step))
-			return -1; // Graphical object reached bottom border
-		else
-			newy = curr.yCoord() + step;
-		next = new Location(curr.xCoord(), newy);
-
-		// Check that graphical objects do not overlap
-		figs[fignum].setOffset(next);
-		for (int i = 0; i < numFigures; ++i)
-			if ((i != fignum) && (figs[fignum].intersects(figs[i]))) {
-				figs[fignum].setOffset(curr);
-				return i;
+		if (reach == 0)
+			return 0;
+		GraphicalFigure fig = figs[fignum];
+		int[] list = JUST_WALLS;
+		int count = 1;
+		if (mode == WALLS_ONLY) {
+			if (!walls.intersects(fig.getMask().getSwept(dx, dy, reach), fig.getX(), fig.getY()))
+				return reach;
+		} else {
+			list = blockers;
+			count = gather(figs, numFigures, fignum, n, dx, dy, reach, mode);
+			if (count == 0)
+				return reach;
+		}
+		int free = 0; // The first free steps can be made
+		if ((dx == 0) || (dy == 0) || (Math.abs(dx) == Math.abs(dy))) {
+			int sx = Integer.signum(dx), sy = Integer.signum(dy);
+			for (int length = Integer.highestOneBit(reach); length > 0; length >>= 1)
+				if ((free + length <= reach) && !meets(figs, fig, fig.getMask().getSwept(sx * length, sy * length, length),
+						sx * free, sy * free, list, count))
+					free += length;
+		} else {
+			int stop = reach; // The first stop steps cannot be made
+			while (stop - free > 1) {
+				int half = (free + stop) >>> 1;
+				if (meets(figs, fig, fig.getMask().getSwept(dx, dy, half), 0, 0, list, count))
+					stop = half;
+				else
+					free = half;
 			}
+		}
+		return free;
+	}
+
+	/* ============================================ */
+	private int gather(GraphicalFigure[] figs, int numFigures, int fignum, int n, int dx, int dy, int m, int mode)
+	/* ============================================ */
+	/*
+	 * Store in blockers the figures among the n near the one being moved that
+	 * it meets in its first m steps towards (dx, dy), among those the mode says
+	 * to test, and return how many there are. When several of the figures near
+	 * it are fixed, all the fixed figures are tested at once with their mask,
+	 * stored as -1. Figures known to be too far apart are not tested.
+	 */
+	{
+		GraphicalFigure fig = figs[fignum];
+		PixelMask swept = fig.getMask().getSwept(dx, dy, m);
+		int steps = Math.max(Math.abs(dx), Math.abs(dy));
+		long distance = Math.abs(dx * m / steps) + Math.abs(dy * m / steps);
+		boolean wall = (mode == EVERYTHING) && (countFixed(figs, n) >= 2);
+		int count = 0;
+		if (wall && walls.intersects(swept, fig.getX(), fig.getY()))
+			blockers[count++] = -1;
+		for (int k = 0; k < n; ++k) {
+			if (nearby[k] >= numFigures)
+				continue;
+			GraphicalFigure other = figs[nearby[k]];
+			if ((other.getType().equals(FIXED) && ((mode == MOVING_ONLY) || wall))
+					|| separations.apart(fig, other, distance))
+				continue;
+			if (swept.intersects(other.getMask(), other.getX() - fig.getX(), other.getY() - fig.getY()))
+				blockers[count++] = nearby[k];
+		}
+		return count;
+	}
 
-		// Move graphical object to its new Location
-		figs[fignum].setOffset(curr);
-		environment.eraseFigure(figs[fignum]);
-		figs[fignum].setOffset(next);
-		environment.drawFigure(figs[fignum]);
-		return -2;
+	/* ============================================ */
+	private boolean meets(GraphicalFigure[] figs, GraphicalFigure fig, PixelMask swept, int ox, int oy, int[] list,
+			int count)
+	/* ============================================ */
+	/*
+	 * Return true if the swept mask of the figure, moved by (ox, oy), meets one
+	 * of the first count figures of the list, -1 standing for the mask of the
+	 * fixed figures. Only reads the figures
+	 */
+	{
+		int x = fig.getX() + ox, y = fig.getY() + oy;
+		for (int i = 0; i < count; ++i) {
+			if ((list[i] < 0) ? walls.intersects(swept, x, y)
+					: swept.intersects(figs[list[i]].getMask(), figs[list[i]].getX() - x, figs[list[i]].getY() - y))
+				return true;
+		}
+		return false;
 	}
 
 	/* ============================================ */
-	public int moveUp(GraphicalFigure[] figs, int numFigures, int fignum, int step)
+	private int contact(GraphicalFigure[] figs, int numFigures, int fignum, int n, int dx, int dy, int t)
 	/* ============================================ */
 	/*
-	 * Move the graphical object specified by the second argument to the right. Return true
-	 * if the graphical object could move
+	 * Put the figure t steps towards (dx, dy), where it is known to meet another
+	 * figure, and return the index of the first figure it meets there
 	 */
 	{
-		Location curr, next;
-		int newy;
-
-		curr = figs[fignum].getOffset();
-		if (curr.yCoord() < step)
-			return -1; // Graphical object reached top border
-		else
-			newy = curr.yCoord() - step;
-		next = new Location(curr.xCoord(), newy);
-
-		// Check that graphical objects do not overlap
-		figs[fignum].setOffset(next);
-		for (int i = 0; i < numFigures; ++i)
-			if ((i != fignum) && (figs[fignum].intersects(figs[i]))) {
-				figs[fignum].setOffset(curr);
-				return i;
-			}
+		int steps = Math.max(Math.abs(dx), Math.abs(dy));
+		figs[fignum].setOffset(figs[fignum].getX() + dx * t / steps, figs[fignum].getY() + dy * t / steps);
+		return firstHit(figs, numFigures, fignum, n, true);
+	}
+
+	/* ============================================ */
+	private int inside(GraphicalFigure fig, int dx, int dy, int steps)
+	/* ============================================ */
+	/*
+	 * Return how many of the steps towards (dx, dy) the figure can make before
+	 * it crosses the window's border
+	 */
+	{
+		return Math.min(limit(fig.getX(), width - fig.getWidth(), dx, steps),
+				limit(fig.getY(), height - fig.getHeight(), dy, steps));
+	}
+
+	/* ============================================ */
+	private static int limit(int pos, int max, int d, int steps)
+	/* ============================================ */
+	/*
+	 * Return the largest t, up to steps, for which pos + d * u / steps stays
+	 * between 0 and max for every u from 1 to t. The coordinate only moves one
+	 * way, so once the first step is inside it leaves only on the side it moves
+	 * towards; it moves by |d| * t / steps pixels, rounded down, so by at most
+	 * room pixels as long as |d| * t < (room + 1) * steps
+	 */
+	{
+		if (steps == 0)
+			return 0;
+		int first = pos + d / steps;
+		if ((first < 0) || (first > max))
+			return 0;
+		else if (d == 0)
+			return steps;
+		long room = (d > 0) ? max - pos : pos;
+		return (int) Math.min(steps, ((room + 1) * steps - 1) / Math.abs(d));
+	}
+
+	/* ============================================ */
+	private void place(GraphicalFigure[] figs, int fignum, int currx, int curry, int dx, int dy, int moved,
+			int steps)
+	/* ============================================ */
+	/*
+	 * Put the graphical object back at (currx, curry), then move it by moved of
+	 * the steps towards (dx, dy), the last offset where it did not overlap, and
+	 * tell the world if it moved.
+	 */
+	{
+		figs[fignum].setOffset(currx, curry);
+		if (moved > 0)
+			figs[fignum].setOffset(currx + dx * moved / steps, curry + dy * moved / steps);
+		broadphase.update(figs, fignum);
+		if (moved > 0)
+			world.moved(figs[fignum], currx, curry);
+	}
+
+	/* ============================================ */
+	private int firstHit(GraphicalFigure[] figs, int numFigures, int fignum, int n, boolean fixed)
+	/* ============================================ */
+	/*
+	 * Return the index of the first of the n graphical objects near the one being
+	 * moved that it overlaps at its current offset, or -1 if there is none. The
+	 * fixed ones are left out if the last argument is false.
+	 */
+	{
+		boolean wall = fixed && hitsWalls(figs, fignum, n);
+		for (int k = 0; k < n; ++k)
+			if ((nearby[k] < numFigures) && (wall || !figs[nearby[k]].getType().equals(FIXED))
+					&& (separations.intersects(figs[fignum], figs[nearby[k]], cache)))
+				return nearby[k];
+		return -1;
+	}
+
+	/* ============================================ */
+	private boolean hitsWalls(GraphicalFigure[] figs, int fignum, int n)
+	/* ============================================ */
+	/*
+	 * Return false if the figure being moved cannot hit any of the n fixed
+	 * figures near it, so they need not be tested one by one. When several
+	 * fixed figures are near, the mask of all of them is tested in one pass;
+	 * with fewer, the cached tests of each pair cost less than that pass.
+	 */
+	{
+		int fixed = countFixed(figs, n);
+		if (fixed < 2)
+			return fixed > 0;
+		return walls.intersects(figs[fignum].getMask(), figs[fignum].getX(), figs[fignum].getY());
+	}
+
+	/* ============================================ */
+	private int countFixed(GraphicalFigure[] figs, int n)
+	/* ============================================ */
+	/* Return how many of the n figures near the one being moved are fixed */
+	{
+		int fixed = 0;
+		for (int k = 0; k < n; ++k)
+			if (figs[nearby[k]].getType().equals(FIXED))
+				++fixed;
+		return fixed;
+	}
+
+	/* ============================================ */
+	private class Sweep extends RecursiveAction {
+		/* ============================================ */
+		/* Sweeps one of the parts into which a batch is cut */
+
+		private static final long serialVersionUID = 1;
+		private int part; // Index of the part
+
+		Sweep(int part) {
+			this.part = part;
+		}
+
+		protected void compute() {
+			int count = batch.count;
+			sweep(part * count / sweeps.length, (part + 1) * count / sweeps.length);
+		}
+	}
+
+	/* ============================================ */
+	private class Batch extends RecursiveAction {
+		/* ============================================ */
+		/* Sweeps all the parts of a batch, reused for every batch */
+
+		private static final long serialVersionUID = 1;
+		private int count; // Number of figures in the batch
 
-		// Draw graphical object in its new Location
-		figs[fignum].setOffset(curr);
-		environment.eraseFigure(figs[fignum]);
-		figs[fignum].setOffset(next);
-		environment.drawFigure(figs[fignum]);
-		return -2;
+		protected void compute() {
+			for (Sweep part : sweeps)
+				part.reinitialize();
+			invokeAll(sweeps);
+		}
 	}
 }
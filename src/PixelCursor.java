@@ -0,0 +1,26 @@
+/**
+ * Walks the pixels of a binary search tree in increasing key order without
+ * creating Pixel or Location objects. The tree must not be modified while it is
+ * being walked.
+ * 
+ * @author Bazillah Zargar
+ */
+public interface PixelCursor {
+
+	/*
+	 * Returns true if there are pixels that have not been visited yet.
+	 */
+	public boolean hasNext();
+
+	/*
+	 * Moves to the next pixel and returns its packed key (see Location.key()).
+	 * Throws a NoSuchElementException if all the pixels have been visited.
+	 */
+	public long nextKey();
+
+	/*
+	 * Returns the color of the pixel whose key was returned by the last call
+	 * to nextKey.
+	 */
+	public int color();
+}
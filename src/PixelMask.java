@@ -0,0 +1,637 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Represents the shape of a graphical figure as a bitmask of its pixels. Row y
+ * of the mask is stored in wordsPerRow consecutive longs; bit i of word w of a
+ * row is set if the figure has a pixel in column 64 * w + i of that row. The
+ * mask covers the rectangle of the given width and height whose top left corner
+ * is at (x0, y0) in the coordinates of the figure.
+ * 
+ * Two masks are tested for overlap by AND-ing whole words, 64 pixels at a time.
+ * If the class VectorMaskKernel can be loaded, which requires the module
+ * jdk.incubator.vector, the test is done by that kernel, several words per
+ * instruction; otherwise the portable loop in this class is used. Setting the
+ * system property pacman.vector to false forces the portable loop.
+ * 
+ * Before testing pixels, intersects goes down a pyramid of coarse masks in
+ * which each bit stands for a block of 8x8, then 4x4, pixels. At each level, an
+ * "any" mask has the blocks with at least one pixel and a "full" mask the
+ * blocks with all their pixels. If no "any" blocks of the two masks meet, the
+ * figures cannot overlap; if two "full" blocks meet, they do. Otherwise only
+ * the rows of blocks that met are tested at the next level, and finally pixel
+ * by pixel. Testing a word of pixels costs about as much as testing a word of
+ * blocks, so the coarse levels are only used when the masks overlap over at
+ * least PYRAMID_WORDS words; smaller overlaps, like those of the sprites of
+ * the game, go straight to the pixels.
+ * 
+ * A mask can also be swept along a move (see getSwept), so that a single test
+ * tells whether a figure meets another anywhere along the way.
+ * 
+ * @author Bazillah Zargar
+ */
+public class PixelMask {
+
+	private static final MaskKernel KERNEL = loadKernel(); // vector kernel, or null
+	private static final AtomicInteger NEXT_ID = new AtomicInteger(); // id of the next mask created
+	private static final int[] BLOCKS = { 8, 4 }; // block sizes of the coarse levels, coarsest first
+	private static final int PYRAMID_WORDS = 512; // fewer overlapping words are tested pixel by pixel directly
+	private static final int KINDS = 8; // coarse masks per level: "any" and "full", each in four spreads
+	private static final int NONE = 0; // no coarse blocks meet in a row
+	private static final int SOME = 1; // some coarse blocks meet in a row
+	private static final int HIT = 2; // two full coarse blocks meet in a row
+	private static final int SWEEPS = 32; // most swept masks kept for a mask
+	private static final Sweeps NO_SWEEPS = new Sweeps(new long[0], new PixelMask[0]); // no swept masks
+
+	private final int id = NEXT_ID.incrementAndGet(); // number that identifies this mask
+	private final int x0; // x coordinate of the first column of the mask
+	private final int y0; // y coordinate of the first row of the mask
+	private final int width; // number of columns of the mask
+	private final int height; // number of rows of the mask
+	private final int wordsPerRow; // number of longs in each row
+	private final long[] words; // bits of the mask, row by row
+	private volatile long[] columns; // the same bits word column by word column, null until needed
+	private volatile PixelMask[] pyramid; // coarse masks of each level, null until needed
+	private volatile Sweeps sweeps = NO_SWEEPS; // swept masks built so far
+
+	/**
+	 * Constructor that creates a mask with all the pixels of the given tree. The
+	 * mask covers the smallest rectangle enclosing them.
+	 * 
+	 * @param pixels is the tree storing the pixels of the figure
+	 */
+	public PixelMask(BinarySearchTreeADT pixels) {
+		this(pixels.cursor(), pixels.cursor());
+	}
+
+	/**
+	 * Constructor that creates a mask with all the pixels of the given runs. The
+	 * mask covers the smallest rectangle enclosing them.
+	 * 
+	 * @param pixels is the runs storing the pixels of the figure
+	 */
+	public PixelMask(PixelRuns pixels) {
+		this(pixels.cursor(), pixels.cursor());
+	}
+
+	/**
+	 * Constructor that creates a mask with the pixels of the first n of the given
+	 * masks, mask k placed at (xs[k], ys[k]). Pixels covered by several masks
+	 * are set once. The mask covers the smallest rectangle enclosing them, in
+	 * the coordinates in which the masks are placed.
+	 * 
+	 * @param masks is the array of masks
+	 * @param xs    is the x offset of each mask
+	 * @param ys    is the y offset of each mask
+	 * @param n     is the number of masks
+	 */
+	public PixelMask(PixelMask[] masks, int[] xs, int[] ys, int n) {
+		int xMin = Integer.MAX_VALUE, yMin = Integer.MAX_VALUE;
+		int xMax = Integer.MIN_VALUE, yMax = Integer.MIN_VALUE;
+		for (int k = 0; k < n; ++k)
+			if (masks[k].width > 0) {
+				xMin = Math.min(xMin, xs[k] + masks[k].x0);
+				xMax = Math.max(xMax, xs[k] + masks[k].x0 + masks[k].width - 1);
+				yMin = Math.min(yMin, ys[k] + masks[k].y0);
+				yMax = Math.max(yMax, ys[k] + masks[k].y0 + masks[k].height - 1);
+			}
+		if (xMin > xMax) {
+			xMin = 0;
+			yMin = 0;
+			this.width = 0;
+			this.height = 0;
+		} else {
+			this.width = xMax - xMin + 1;
+			this.height = yMax - yMin + 1;
+		}
+		this.x0 = xMin;
+		this.y0 = yMin;
+		this.wordsPerRow = (this.width + 63) >>> 6;
+		this.words = new long[this.wordsPerRow * this.height];
+		for (int k = 0; k < n; ++k) {
+			PixelMask mask = masks[k];
+			if (mask.width == 0) {
+				continue;
+			}
+			// Offset of the first column and row of mask k in this mask
+			int shiftX = xs[k] + mask.x0 - this.x0, shiftY = ys[k] + mask.y0 - this.y0;
+			int wordMin = shiftX >>> 6, wordMax = (shiftX + mask.width - 1) >>> 6;
+			for (int row = 0; row < mask.height; ++row) {
+				int base = (row + shiftY) * this.wordsPerRow;
+				for (int w = wordMin; w <= wordMax; ++w)
+					this.words[base + w] |= mask.bitsAt(row * mask.wordsPerRow, (w << 6) - shiftX);
+			}
+		}
+	}
+
+	/**
+	 * Constructor that creates a mask with the pixels visited by two cursors over
+	 * the same pixels: the first one to find the enclosing rectangle and the
+	 * second one to set the bits.
+	 * 
+	 * @param bounds is a cursor over the pixels of the figure
+	 * @param fill   is another cursor over the same pixels
+	 */
+	private PixelMask(PixelCursor bounds, PixelCursor fill) {
+		int xMin = Integer.MAX_VALUE, yMin = Integer.MAX_VALUE;
+		int xMax = Integer.MIN_VALUE, yMax = Integer.MIN_VALUE;
+		PixelCursor walk = bounds;
+		while (walk.hasNext()) {
+			long key = walk.nextKey();
+			int x = Location.keyX(key), y = Location.keyY(key);
+			xMin = Math.min(xMin, x);
+			xMax = Math.max(xMax, x);
+			yMin = Math.min(yMin, y);
+			yMax = Math.max(yMax, y);
+		}
+		if (xMin > xMax) {
+			// A figure without pixels has an empty mask
+			xMin = 0;
+			yMin = 0;
+			this.width = 0;
+			this.height = 0;
+		} else {
+			this.width = xMax - xMin + 1;
+			this.height = yMax - yMin + 1;
+		}
+		this.x0 = xMin;
+		this.y0 = yMin;
+		this.wordsPerRow = (this.width + 63) >>> 6;
+		this.words = new long[this.wordsPerRow * this.height];
+		walk = fill;
+		while (walk.hasNext()) {
+			long key = walk.nextKey();
+			int x = Location.keyX(key) - this.x0, y = Location.keyY(key) - this.y0;
+			this.words[y * this.wordsPerRow + (x >>> 6)] |= 1L << x;
+		}
+	}
+
+	/**
+	 * Constructor that creates a mask with the given bits, whose first column and
+	 * row are at (0, 0). Used for the coarse levels of the pyramid.
+	 * 
+	 * @param width  is the number of columns
+	 * @param height is the number of rows
+	 * @param words  is the array of bits, row by row
+	 */
+	private PixelMask(int width, int height, long[] words) {
+		this.x0 = 0;
+		this.y0 = 0;
+		this.width = width;
+		this.height = height;
+		this.wordsPerRow = (width + 63) >>> 6;
+		this.words = words;
+	}
+
+	/**
+	 * Returns the number that identifies this mask. No two masks have the same
+	 * id.
+	 * 
+	 * @return id of the mask
+	 */
+	public int getId() {
+		return this.id;
+	}
+
+	/**
+	 * Returns the x coordinate of the first column of the mask.
+	 * 
+	 * @return x coordinate
+	 */
+	public int getX0() {
+		return this.x0;
+	}
+
+	/**
+	 * Returns the y coordinate of the first row of the mask.
+	 * 
+	 * @return y coordinate
+	 */
+	public int getY0() {
+		return this.y0;
+	}
+
+	/**
+	 * Returns the number of columns of the mask.
+	 * 
+	 * @return width
+	 */
+	public int getWidth() {
+		return this.width;
+	}
+
+	/**
+	 * Returns the number of rows of the mask.
+	 * 
+	 * @return height
+	 */
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * Returns the number of longs in each row of the mask.
+	 * 
+	 * @return words per row
+	 */
+	public int getWordsPerRow() {
+		return this.wordsPerRow;
+	}
+
+	/**
+	 * Returns the bits of the mask, row by row. The array must not be modified.
+	 * 
+	 * @return words of the mask
+	 */
+	public long[] getWords() {
+		return this.words;
+	}
+
+	/**
+	 * Returns the bits of the mask stored word column by word column: word w of
+	 * row y is at position w * height + y, so the same word of consecutive rows is
+	 * contiguous. This is the layout used by the vector kernel. The array is built
+	 * the first time it is requested and must not be modified.
+	 * 
+	 * @return words of the mask, by word column
+	 */
+	public long[] getColumns() {
+		long[] result = this.columns;
+		if (result == null) {
+			result = new long[this.words.length];
+			for (int row = 0; row < this.height; ++row)
+				for (int w = 0; w < this.wordsPerRow; ++w)
+					result[w * this.height + row] = this.words[row * this.wordsPerRow + w];
+			this.columns = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the mask of the pixels covered by this mask over steps 1 to m of a
+	 * move towards (dx, dy), made one pixel at a time along the larger axis: step
+	 * t puts the figure at (dx * t / steps, dy * t / steps), where steps is the
+	 * larger of |dx| and |dy|. The swept mask is in the coordinates of the figure
+	 * before the move, so it meets another mask if and only if the figure meets
+	 * it at one of those steps. The last swept masks built are kept, so a figure
+	 * that keeps making the same moves builds them only once, and they may be
+	 * requested from several threads at the same time.
+	 * 
+	 * @param dx is the move to the right
+	 * @param dy is the move down
+	 * @param m  is the number of steps swept, from 1 to the larger of |dx| and
+	 *           |dy|
+	 * @return swept mask
+	 */
+	public PixelMask getSwept(int dx, int dy, int m) {
+		long key = ((long) (dx & 0x1fffff) << 42) | ((long) (dy & 0x1fffff) << 21) | m;
+		Sweeps known = this.sweeps;
+		for (int i = 0; i < known.keys.length; ++i)
+			if (known.keys[i] == key) {
+				return known.masks[i];
+			}
+		int steps = Math.max(Math.abs(dx), Math.abs(dy));
+		PixelMask[] copies = new PixelMask[m];
+		int[] xs = new int[m], ys = new int[m];
+		for (int t = 1; t <= m; ++t) {
+			copies[t - 1] = this;
+			xs[t - 1] = dx * t / steps;
+			ys[t - 1] = dy * t / steps;
+		}
+		PixelMask result = new PixelMask(copies, xs, ys, m);
+		synchronized (this) {
+			known = (this.sweeps.keys.length < SWEEPS) ? this.sweeps : NO_SWEEPS;
+			long[] keys = Arrays.copyOf(known.keys, known.keys.length + 1);
+			PixelMask[] masks = Arrays.copyOf(known.masks, known.masks.length + 1);
+			keys[known.keys.length] = key;
+			masks[known.masks.length] = result;
+			this.sweeps = new Sweeps(keys, masks);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the coarse masks of this mask. For the i-th block size in BLOCKS,
+	 * position KINDS * i + spread has the "any" mask and KINDS * i + 4 + spread
+	 * the "full" mask, in which bit (c, r) stands for the block of pixels starting
+	 * at column c * size and row r * size. Blocks that go past the edges of this
+	 * mask are never full. The spread is 0 for the masks themselves; with spread
+	 * 1, 2 or 3, each bit is also set in the next column, the next row, or both,
+	 * which gives the blocks met by a block of another figure placed at an offset
+	 * that is not a multiple of the size. The masks are built the first time they
+	 * are requested.
+	 * 
+	 * @return the coarse masks
+	 */
+	PixelMask[] getPyramid() {
+		PixelMask[] result = this.pyramid;
+		if (result == null) {
+			result = new PixelMask[KINDS * BLOCKS.length];
+			for (int level = 0; level < BLOCKS.length; ++level) {
+				int size = BLOCKS[level];
+				int coarseWidth = (this.width + size - 1) / size;
+				int coarseHeight = (this.height + size - 1) / size;
+				int coarseWords = (coarseWidth + 63) >>> 6;
+				long[] any = new long[coarseWords * coarseHeight];
+				long[] full = new long[coarseWords * coarseHeight];
+				long blockBits = (1L << size) - 1;
+				for (int r = 0; r < coarseHeight; ++r)
+					for (int c = 0; c < coarseWidth; ++c) {
+						int count = 0;
+						for (int row = r * size; row < Math.min(this.height, (r + 1) * size); ++row)
+							count += Long.bitCount(bitsAt(row * this.wordsPerRow, c * size) & blockBits);
+						int index = r * coarseWords + (c >>> 6);
+						if (count > 0)
+							any[index] |= 1L << c;
+						if (count == size * size)
+							full[index] |= 1L << c;
+					}
+				PixelMask anyMask = new PixelMask(coarseWidth, coarseHeight, any);
+				PixelMask fullMask = new PixelMask(coarseWidth, coarseHeight, full);
+				for (int spread = 0; spread < 4; ++spread) {
+					result[KINDS * level + spread] = anyMask.spread(spread & 1, spread >>> 1);
+					result[KINDS * level + 4 + spread] = fullMask.spread(spread & 1, spread >>> 1);
+				}
+			}
+			this.pyramid = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the name of the kernel used to test masks for overlap.
+	 * 
+	 * @return "vector" if the vector kernel is in use and "scalar" otherwise
+	 */
+	public static String kernelName() {
+		return (KERNEL == null) ? "scalar" : "vector";
+	}
+
+	/**
+	 * Helper method. Loads the vector kernel if it is available and enabled.
+	 * 
+	 * @return the vector kernel, or null
+	 */
+	private static MaskKernel loadKernel() {
+		if ("false".equals(System.getProperty("pacman.vector"))) {
+			return null;
+		}
+		try {
+			return (MaskKernel) Class.forName("VectorMaskKernel").getDeclaredConstructor().newInstance();
+		} catch (Exception | LinkageError e) {
+			// The kernel was not compiled, or jdk.incubator.vector is not present
+			return null;
+		}
+	}
+
+	/**
+	 * Returns true if the pixel (x, y), in the coordinates of the figure, is set
+	 * in the mask.
+	 * 
+	 * @param x is the x coordinate
+	 * @param y is the y coordinate
+	 * @return true if the pixel is set and false otherwise
+	 */
+	public boolean contains(int x, int y) {
+		int col = x - this.x0, row = y - this.y0;
+		if ((col < 0) || (row < 0) || (col >= this.width) || (row >= this.height)) {
+			return false;
+		}
+		return (this.words[row * this.wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+	}
+
+	/**
+	 * Returns true if this mask and the given one have a pixel in common when the
+	 * figure of the other mask is placed at (dx, dy) relative to the figure of
+	 * this mask.
+	 * 
+	 * @param other is the mask being tested for overlap
+	 * @param dx    is the x offset of the other figure minus that of this figure
+	 * @param dy    is the y offset of the other figure minus that of this figure
+	 * @return true if the masks overlap and false otherwise
+	 */
+	public boolean intersects(PixelMask other, int dx, int dy) {
+		// Offset of the first column and row of the other mask in this mask
+		int shiftX = other.x0 + dx - this.x0;
+		int shiftY = other.y0 + dy - this.y0;
+		int cols = Math.min(this.width, other.width + shiftX) - Math.max(0, shiftX);
+		int rows = Math.min(this.height, other.height + shiftY) - Math.max(0, shiftY);
+		if ((cols <= 0) || (rows <= 0)) {
+			return false;
+		} else if (rows * ((cols + 63) >>> 6) < PYRAMID_WORDS) {
+			return intersectsFlat(other, dx, dy);
+		}
+		return descend(other, dx, dy, getPyramid(), other.getPyramid(), 0, 0, this.height - 1);
+	}
+
+	/**
+	 * Returns true if this mask and the given one overlap, like intersects, but
+	 * testing every overlapping row pixel by pixel without going through the
+	 * coarse levels.
+	 * 
+	 * @param other is the mask being tested for overlap
+	 * @param dx    is the x offset of the other figure minus that of this figure
+	 * @param dy    is the y offset of the other figure minus that of this figure
+	 * @return true if the masks overlap and false otherwise
+	 */
+	public boolean intersectsFlat(PixelMask other, int dx, int dy) {
+		if (KERNEL != null) {
+			return KERNEL.intersects(this, other, dx, dy, 0, this.height - 1);
+		}
+		return intersectsScalar(other, dx, dy, 0, this.height - 1);
+	}
+
+	/**
+	 * Returns true if this mask and the given one have a pixel in common in rows
+	 * rowFrom to rowTo of this mask, always using the portable loop.
+	 * 
+	 * @param other   is the mask being tested for overlap
+	 * @param dx      is the x offset of the other figure minus that of this figure
+	 * @param dy      is the y offset of the other figure minus that of this figure
+	 * @param rowFrom is the first row of this mask to test
+	 * @param rowTo   is the last row of this mask to test
+	 * @return true if the masks overlap and false otherwise
+	 */
+	public boolean intersectsScalar(PixelMask other, int dx, int dy, int rowFrom, int rowTo) {
+		// Offset of the first column and row of the other mask in this mask
+		int shiftX = other.x0 + dx - this.x0;
+		int shiftY = other.y0 + dy - this.y0;
+		int colMin = Math.max(0, shiftX);
+		int colMax = Math.min(this.width, other.width + shiftX) - 1;
+		int rowMin = Math.max(rowFrom, shiftY);
+		int rowMax = Math.min(rowTo + 1, Math.min(this.height, other.height + shiftY)) - 1;
+		if ((colMin > colMax) || (rowMin > rowMax)) {
+			return false;
+		}
+		int wordMin = colMin >>> 6, wordMax = colMax >>> 6;
+		for (int row = rowMin; row <= rowMax; ++row) {
+			int base = row * this.wordsPerRow;
+			int otherBase = (row - shiftY) * other.wordsPerRow;
+			for (int w = wordMin; w <= wordMax; ++w) {
+				long bits = this.words[base + w];
+				if ((bits != 0) && ((bits & other.bitsAt(otherBase, (w << 6) - shiftX)) != 0)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Helper method. Returns a copy of this mask in which each set bit is also
+	 * set spanX columns to its right and spanY rows below it, so the copy has
+	 * spanX more columns and spanY more rows.
+	 * 
+	 * @param spanX is 1 to spread the bits to the next column and 0 otherwise
+	 * @param spanY is 1 to spread the bits to the next row and 0 otherwise
+	 * @return the spread mask, or this mask if both spans are 0
+	 */
+	private PixelMask spread(int spanX, int spanY) {
+		if ((spanX == 0) && (spanY == 0)) {
+			return this;
+		}
+		int spreadWidth = this.width + spanX, spreadHeight = this.height + spanY;
+		int spreadWords = (spreadWidth + 63) >>> 6;
+		long[] result = new long[spreadWords * spreadHeight];
+		for (int row = 0; row < spreadHeight; ++row)
+			for (int w = 0; w < spreadWords; ++w) {
+				long bits = 0;
+				for (int r = Math.max(0, row - spanY); r <= Math.min(row, this.height - 1); ++r) {
+					bits |= bitsAt(r * this.wordsPerRow, w << 6);
+					if (spanX != 0) {
+						bits |= bitsAt(r * this.wordsPerRow, (w << 6) - 1);
+					}
+				}
+				result[row * spreadWords + w] = bits;
+			}
+		return new PixelMask(spreadWidth, spreadHeight, result);
+	}
+
+	/**
+	 * Helper method. Tests rows rowFrom to rowTo of this mask against the other
+	 * mask at the given level of the pyramid. Runs of consecutive rows of blocks
+	 * that meet are passed on to the next level, and the last level passes them
+	 * on to the pixel test.
+	 * 
+	 * @param other   is the mask being tested for overlap
+	 * @param dx      is the x offset of the other figure minus that of this figure
+	 * @param dy      is the y offset of the other figure minus that of this figure
+	 * @param mine    is the pyramid of this mask
+	 * @param theirs  is the pyramid of the other mask
+	 * @param level   is the level of the pyramid, 0 for the coarsest
+	 * @param rowFrom is the first row of this mask to test
+	 * @param rowTo   is the last row of this mask to test
+	 * @return true if the masks overlap in those rows and false otherwise
+	 */
+	private boolean descend(PixelMask other, int dx, int dy, PixelMask[] mine, PixelMask[] theirs, int level,
+			int rowFrom, int rowTo) {
+		if (level == BLOCKS.length) {
+			if (KERNEL != null) {
+				return KERNEL.intersects(this, other, dx, dy, rowFrom, rowTo);
+			}
+			return intersectsScalar(other, dx, dy, rowFrom, rowTo);
+		}
+		// Block (c, r) of this mask meets blocks (c + loX, r + loY) to (c + loX + spanX, r + loY + spanY)
+		int size = BLOCKS[level];
+		int shiftX = other.x0 + dx - this.x0, shiftY = other.y0 + dy - this.y0;
+		int loX = Math.floorDiv(-shiftX, size), loY = Math.floorDiv(-shiftY, size);
+		int spanX = (Math.floorMod(-shiftX, size) != 0) ? 1 : 0;
+		int spanY = (Math.floorMod(-shiftY, size) != 0) ? 1 : 0;
+		int index = KINDS * level;
+		PixelMask any = mine[index], full = mine[index + 4];
+		PixelMask otherAny = theirs[index + spanX + 2 * spanY];
+		PixelMask otherFull = theirs[index + 4 + spanX + 2 * spanY];
+
+		// Rows and columns of blocks of this mask that can meet those of the other one
+		int coarseX = -loX - spanX, coarseY = -loY - spanY;
+		int colMin = Math.max(0, coarseX);
+		int colMax = Math.min(any.width, otherAny.width + coarseX) - 1;
+		int rowMin = Math.max(rowFrom / size, coarseY);
+		int rowMax = Math.min(rowTo / size + 1, Math.min(any.height, otherAny.height + coarseY)) - 1;
+		if (colMin > colMax) {
+			return false;
+		}
+		for (int row = rowMin; row <= rowMax; ++row) {
+			int meet = any.meets(full, otherAny, otherFull, row, coarseX, coarseY, colMin, colMax);
+			if ((meet == HIT) || ((meet == SOME) && descend(other, dx, dy, mine, theirs, level + 1,
+					Math.max(rowFrom, row * size), Math.min(rowTo, row * size + size - 1)))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Helper method. Tests a row of this coarse "any" mask against a spread "any"
+	 * mask of the other figure and, where blocks meet, the matching "full" masks.
+	 * 
+	 * @param full      is the "full" mask of this figure at the same level
+	 * @param otherAny  is the spread "any" mask of the other figure
+	 * @param otherFull is the spread "full" mask of the other figure
+	 * @param row       is the row of this mask to test
+	 * @param shiftX    is the column of this mask where the other masks start
+	 * @param shiftY    is the row of this mask where the other masks start
+	 * @param colMin    is the first column of this mask that can meet them
+	 * @param colMax    is the last column of this mask that can meet them
+	 * @return HIT if two full blocks meet, SOME if other blocks meet and NONE
+	 *         otherwise
+	 */
+	private int meets(PixelMask full, PixelMask otherAny, PixelMask otherFull, int row, int shiftX, int shiftY,
+			int colMin, int colMax) {
+		int base = row * this.wordsPerRow;
+		int otherBase = (row - shiftY) * otherAny.wordsPerRow;
+		int result = NONE;
+		for (int w = colMin >>> 6; w <= colMax >>> 6; ++w) {
+			long bits = this.words[base + w];
+			if ((bits != 0) && ((bits & otherAny.bitsAt(otherBase, (w << 6) - shiftX)) != 0)) {
+				if ((full.words[base + w] & otherFull.bitsAt(otherBase, (w << 6) - shiftX)) != 0) {
+					return HIT;
+				}
+				result = SOME;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Helper method. Returns the 64 bits of a row of this mask that start at the
+	 * given column, which may lie outside the mask. Bits outside the mask are 0.
+	 * 
+	 * @param base  is the index of the first word of the row
+	 * @param start is the column of the first bit
+	 * @return bits start to start + 63 of the row
+	 */
+	long bitsAt(int base, int start) {
+		if (start <= -64) {
+			return 0;
+		} else if (start < 0) {
+			return this.words[base] << -start;
+		}
+		int w = start >>> 6, shift = start & 63;
+		if (w >= this.wordsPerRow) {
+			return 0;
+		}
+		long bits = this.words[base + w] >>> shift;
+		if ((shift != 0) && (w + 1 < this.wordsPerRow)) {
+			bits |= this.words[base + w + 1] << (64 - shift);
+		}
+		return bits;
+	}
+
+	/* =================================================================== */
+	private static class Sweeps {
+		/* =================================================================== */
+		/*
+		 * Swept masks of a mask and the moves they were built for. Never changed
+		 * once built, so it can be read without locking
+		 */
+
+		private final long[] keys; // move and number of steps of each swept mask
+		private final PixelMask[] masks; // swept masks
+
+		Sweeps(long[] keys, PixelMask[] masks) {
+			this.keys = keys;
+			this.masks = masks;
+		}
+	}
+}
@@ -0,0 +1,245 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Represents the pixels of a graphical figure as runs: for each column of the
+ * figure, the sorted intervals of consecutive rows that have pixels. The runs
+ * of column x0 + i are those in positions firstRun[i] to firstRun[i + 1] - 1,
+ * and run j covers rows runStart[j] to runEnd[j]. The colors of the pixels are
+ * kept in a single array in the order of their keys (see Location.key()),
+ * column by column and then row by row, which is also the order of the runs.
+ * 
+ * A solid figure has about one run per column, so it takes 4 bytes per pixel
+ * for its color plus a few bytes per column, while a tree takes a node per
+ * pixel. The runs cannot be modified once built, so they can be shared by
+ * several figures, and so can the bitmask built from them.
+ * 
+ * @author Bazillah Zargar
+ */
+public class PixelRuns {
+
+	private final int x0; // x coordinate of the first column
+	private final int width; // number of columns
+	private final int[] firstRun; // position of the first run of each column, plus the number of runs
+	private final int[] runStart; // first row of each run
+	private final int[] runEnd; // last row of each run
+	private final int[] colors; // colors of the pixels, in increasing key order
+	private volatile PixelMask mask; // bitmask of the pixels, null until needed
+
+	/**
+	 * Constructor that creates the runs of the first n pixels with the given
+	 * packed keys (see Location.key()) and colors. The keys must be in increasing
+	 * order. Throws a DuplicatedKeyException if two consecutive keys are equal.
+	 * 
+	 * @param keys   is the array of packed keys, in increasing order
+	 * @param colors is the array of colors
+	 * @param n      is the number of pixels
+	 */
+	public PixelRuns(long[] keys, int[] colors, int n) throws DuplicatedKeyException {
+		BinarySearchTree.checkSorted(keys, n);
+		this.colors = Arrays.copyOf(colors, n);
+		if (n == 0) {
+			this.x0 = 0;
+			this.width = 0;
+		} else {
+			this.x0 = Location.keyX(keys[0]);
+			this.width = Location.keyX(keys[n - 1]) - this.x0 + 1;
+		}
+
+		// A run ends where the column changes or a row is skipped
+		int runs = 0;
+		for (int i = 0; i < n; ++i)
+			if ((i == 0) || (keys[i] != keys[i - 1] + 1) || (Location.keyX(keys[i]) != Location.keyX(keys[i - 1])))
+				++runs;
+		this.firstRun = new int[this.width + 1];
+		this.runStart = new int[runs];
+		this.runEnd = new int[runs];
+		int run = -1, column = 0;
+		for (int i = 0; i < n; ++i) {
+			int x = Location.keyX(keys[i]) - this.x0, y = Location.keyY(keys[i]);
+			if ((run < 0) || (x != column) || (y != this.runEnd[run] + 1)) {
+				++run;
+				while (column < x)
+					this.firstRun[++column] = run;
+				this.runStart[run] = y;
+			}
+			this.runEnd[run] = y;
+		}
+		while (column < this.width)
+			this.firstRun[++column] = runs;
+	}
+
+	/**
+	 * Returns the x coordinate of the first column.
+	 * 
+	 * @return x coordinate of the first column
+	 */
+	public int getX0() {
+		return this.x0;
+	}
+
+	/**
+	 * Returns the number of columns, from the first one with pixels to the last
+	 * one with pixels.
+	 * 
+	 * @return number of columns
+	 */
+	public int getWidth() {
+		return this.width;
+	}
+
+	/**
+	 * Returns the number of pixels.
+	 * 
+	 * @return number of pixels
+	 */
+	public int size() {
+		return this.colors.length;
+	}
+
+	/**
+	 * Returns the number of runs.
+	 * 
+	 * @return number of runs
+	 */
+	public int runCount() {
+		return this.runStart.length;
+	}
+
+	/**
+	 * Returns the number of bytes taken by the arrays of the runs.
+	 * 
+	 * @return size of the runs in bytes
+	 */
+	public long bytes() {
+		return 4L * (this.firstRun.length + this.runStart.length + this.runEnd.length + this.colors.length);
+	}
+
+	/**
+	 * Returns the bitmask of the pixels. It is built the first time it is
+	 * requested.
+	 * 
+	 * @return bitmask of the pixels
+	 */
+	public PixelMask getMask() {
+		PixelMask result = this.mask;
+		if (result == null) {
+			result = new PixelMask(this);
+			this.mask = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns true if there is a pixel at (x, y) and false otherwise. The runs of
+	 * column x are searched by bisection.
+	 * 
+	 * @param x is the x coordinate
+	 * @param y is the y coordinate
+	 * @return true if there is a pixel at (x, y)
+	 */
+	public boolean contains(int x, int y) {
+		int column = x - this.x0;
+		if ((column < 0) || (column >= this.width)) {
+			return false;
+		}
+		// Find the last run of the column that starts at or above y
+		int low = this.firstRun[column], high = this.firstRun[column + 1] - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (this.runStart[middle] <= y) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return (high >= this.firstRun[column]) && (y <= this.runEnd[high]);
+	}
+
+	/**
+	 * Returns true if these runs and the given ones have a pixel in common when
+	 * the figure of the other runs is placed at (dx, dy) relative to the figure of
+	 * these runs. For each column where the figures overlap, the two sorted lists
+	 * of runs are merged, advancing the one whose current run ends first, until
+	 * two runs overlap.
+	 * 
+	 * @param other is the runs being tested for overlap
+	 * @param dx    is the x offset of the other figure minus that of this figure
+	 * @param dy    is the y offset of the other figure minus that of this figure
+	 * @return true if the figures overlap and false otherwise
+	 */
+	public boolean intersects(PixelRuns other, int dx, int dy) {
+		int xMin = Math.max(this.x0, other.x0 + dx);
+		int xMax = Math.min(this.x0 + this.width, other.x0 + other.width + dx) - 1;
+		for (int x = xMin; x <= xMax; ++x) {
+			int i = this.firstRun[x - this.x0], iEnd = this.firstRun[x - this.x0 + 1];
+			int j = other.firstRun[x - dx - other.x0], jEnd = other.firstRun[x - dx - other.x0 + 1];
+			while ((i < iEnd) && (j < jEnd)) {
+				if (this.runEnd[i] < other.runStart[j] + dy) {
+					++i;
+				} else if (other.runEnd[j] + dy < this.runStart[i]) {
+					++j;
+				} else {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns a cursor that walks the pixels in increasing key order.
+	 * 
+	 * @return a cursor positioned before the first pixel
+	 */
+	public PixelCursor cursor() {
+		return new RunCursor();
+	}
+
+	/**
+	 * Walks the pixels run by run.
+	 */
+	private class RunCursor implements PixelCursor {
+
+		private int column; // column of the next pixel, relative to x0
+		private int run; // run of the next pixel
+		private int row; // row of the next pixel
+		private int index; // position of the next pixel in colors
+
+		/**
+		 * Constructor that positions the cursor before the first pixel.
+		 * 
+		 */
+		RunCursor() {
+			this.column = 0;
+			this.run = 0;
+			this.row = (runStart.length > 0) ? runStart[0] : 0;
+			this.index = 0;
+		}
+
+		public boolean hasNext() {
+			return this.index < colors.length;
+		}
+
+		public long nextKey() {
+			if (!hasNext()) {
+				throw new NoSuchElementException("No more pixels in the runs");
+			}
+			while (firstRun[this.column + 1] <= this.run) {
+				++this.column;
+			}
+			long key = Location.key(x0 + this.column, this.row);
+			++this.index;
+			if (this.row < runEnd[this.run]) {
+				++this.row;
+			} else if (++this.run < runStart.length) {
+				this.row = runStart[this.run];
+			}
+			return key;
+		}
+
+		public int color() {
+			return colors[this.index - 1];
+		}
+	}
+}
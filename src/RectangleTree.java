@@ -0,0 +1,375 @@
+import java.util.Arrays;
+
+/**
+ * Implements a dynamic tree of rectangles, each with an integer item, that
+ * finds the rectangles meeting a given one. Each leaf holds a rectangle and
+ * each internal node the smallest rectangle enclosing those of its two
+ * children, so a query only goes down the nodes whose rectangles meet the one
+ * being looked for.
+ * 
+ * A new leaf is put next to the node that makes the enclosing rectangles on
+ * the way down grow the least, measured by their perimeters, and the tree is
+ * then rebalanced on the way up by rotations like those of an AVL tree, so its
+ * height stays logarithmic in the number of leaves whatever the order of the
+ * insertions and however the rectangles are clustered.
+ * 
+ * The nodes are stored in parallel primitive arrays, as in
+ * ArrayBinarySearchTree: node i has rectangle minX[i], minY[i], maxX[i],
+ * maxY[i], children first[i] and second[i], parent parent[i] and item item[i].
+ * Index 0 is NIL. Removed nodes are put in a free list linked through parent[]
+ * and are reused by later insertions. Rectangles include their edges, so two
+ * rectangles that only touch meet.
+ * 
+ * @author Bazillah Zargar
+ */
+public class RectangleTree {
+
+	private static final int NIL = 0; // index of no node
+	private static final int DEFAULT_CAPACITY = 16; // initial number of nodes
+
+	private int[] minX, minY, maxX, maxY; // rectangle of each node
+	private int[] first; // first child of each node, NIL for leaves
+	private int[] second; // second child of each node, NIL for leaves
+	private int[] parent; // parent of each node, or next free node
+	private int[] height; // height of the subtree rooted at each node, 0 for leaves
+	private int[] item; // item of each leaf
+	private int[] stack; // nodes still to visit during a query
+	private int root; // index of the root
+	private int size; // number of leaves
+	private int next; // first index that has never been used
+	private int free; // first node of the free list
+
+	/**
+	 * Constructor that creates an empty tree.
+	 * 
+	 */
+	public RectangleTree() {
+		int length = DEFAULT_CAPACITY;
+		this.minX = new int[length];
+		this.minY = new int[length];
+		this.maxX = new int[length];
+		this.maxY = new int[length];
+		this.first = new int[length];
+		this.second = new int[length];
+		this.parent = new int[length];
+		this.height = new int[length];
+		this.item = new int[length];
+		this.stack = new int[length];
+		this.root = NIL;
+		this.next = 1;
+		this.free = NIL;
+	}
+
+	/**
+	 * Returns the number of rectangles in the tree.
+	 * 
+	 * @return number of rectangles
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the height of the tree, 0 if it has a single rectangle and -1 if
+	 * it is empty.
+	 * 
+	 * @return height of the tree
+	 */
+	public int getHeight() {
+		return (this.root == NIL) ? -1 : this.height[this.root];
+	}
+
+	/**
+	 * Adds a rectangle with the given item and returns the leaf that holds it,
+	 * which is passed to remove() and encloses().
+	 * 
+	 * @param value is the item of the rectangle
+	 * @param x0    is the x coordinate of the left edge
+	 * @param y0    is the y coordinate of the top edge
+	 * @param x1    is the x coordinate of the right edge
+	 * @param y1    is the y coordinate of the bottom edge
+	 * @return the leaf of the rectangle
+	 */
+	public int insert(int value, int x0, int y0, int x1, int y1) {
+		int leaf = allocate();
+		set(leaf, x0, y0, x1, y1);
+		this.first[leaf] = NIL;
+		this.second[leaf] = NIL;
+		this.height[leaf] = 0;
+		this.item[leaf] = value;
+		++this.size;
+		if (this.root == NIL) {
+			this.root = leaf;
+			this.parent[leaf] = NIL;
+			return leaf;
+		}
+
+		// Go down towards the node whose enclosing rectangles grow the least
+		int node = this.root;
+		while (this.first[node] != NIL) {
+			int area = perimeter(node, node);
+			int combined = perimeter(node, leaf);
+			int stay = 2 * combined; // cost of making a new parent for this node and the leaf
+			int inherited = 2 * (combined - area); // growth of this node if the leaf goes below it
+			int costFirst = descent(this.first[node], leaf) + inherited;
+			int costSecond = descent(this.second[node], leaf) + inherited;
+			if ((stay < costFirst) && (stay < costSecond)) {
+				break;
+			}
+			node = (costFirst < costSecond) ? this.first[node] : this.second[node];
+		}
+
+		// Make a new parent for that node and the leaf
+		int oldParent = this.parent[node];
+		int newParent = allocate();
+		this.parent[newParent] = oldParent;
+		this.first[newParent] = node;
+		this.second[newParent] = leaf;
+		this.parent[node] = newParent;
+		this.parent[leaf] = newParent;
+		if (oldParent == NIL) {
+			this.root = newParent;
+		} else if (this.first[oldParent] == node) {
+			this.first[oldParent] = newParent;
+		} else {
+			this.second[oldParent] = newParent;
+		}
+		refit(newParent);
+		return leaf;
+	}
+
+	/**
+	 * Removes the rectangle of the given leaf.
+	 * 
+	 * @param leaf is the leaf returned by insert()
+	 */
+	public void remove(int leaf) {
+		--this.size;
+		if (leaf == this.root) {
+			this.root = NIL;
+			release(leaf);
+			return;
+		}
+		// The sibling of the leaf takes the place of their parent
+		int up = this.parent[leaf];
+		int grandParent = this.parent[up];
+		int sibling = (this.first[up] == leaf) ? this.second[up] : this.first[up];
+		this.parent[sibling] = grandParent;
+		if (grandParent == NIL) {
+			this.root = sibling;
+		} else {
+			if (this.first[grandParent] == up) {
+				this.first[grandParent] = sibling;
+			} else {
+				this.second[grandParent] = sibling;
+			}
+			refit(grandParent);
+		}
+		release(up);
+		release(leaf);
+	}
+
+	/**
+	 * Returns true if the rectangle of the given leaf encloses the given
+	 * rectangle and false otherwise.
+	 * 
+	 * @param leaf is the leaf returned by insert()
+	 * @param x0   is the x coordinate of the left edge
+	 * @param y0   is the y coordinate of the top edge
+	 * @param x1   is the x coordinate of the right edge
+	 * @param y1   is the y coordinate of the bottom edge
+	 * @return true if the rectangle of the leaf encloses the given one
+	 */
+	public boolean encloses(int leaf, int x0, int y0, int x1, int y1) {
+		return (this.minX[leaf] <= x0) && (this.minY[leaf] <= y0) && (x1 <= this.maxX[leaf]) && (y1 <= this.maxY[leaf]);
+	}
+
+	/**
+	 * Stores in result, from position n on, the items of the rectangles that
+	 * meet the given one, and returns the position after the last one stored.
+	 * 
+	 * @param x0     is the x coordinate of the left edge
+	 * @param y0     is the y coordinate of the top edge
+	 * @param x1     is the x coordinate of the right edge
+	 * @param y1     is the y coordinate of the bottom edge
+	 * @param result is the array where the items are stored
+	 * @param n      is the position of the first item stored
+	 * @return the position after the last item stored
+	 */
+	public int query(int x0, int y0, int x1, int y1, int[] result, int n) {
+		if (this.root == NIL) {
+			return n;
+		}
+		int top = 0;
+		this.stack[top++] = this.root;
+		while (top > 0) {
+			int node = this.stack[--top];
+			if ((this.minX[node] > x1) || (this.maxX[node] < x0) || (this.minY[node] > y1) || (this.maxY[node] < y0)) {
+				continue;
+			}
+			if (this.first[node] == NIL) {
+				result[n++] = this.item[node];
+			} else {
+				if (top + 2 > this.stack.length) {
+					this.stack = Arrays.copyOf(this.stack, 2 * this.stack.length);
+				}
+				this.stack[top++] = this.first[node];
+				this.stack[top++] = this.second[node];
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Helper method. Returns the cost of putting the leaf below the given child:
+	 * the perimeter of a new parent for the two if the child is a leaf, and
+	 * otherwise how much the perimeter of the child grows.
+	 * 
+	 * @param child is the child being considered
+	 * @param leaf  is the leaf being inserted
+	 * @return the cost of going down to the child
+	 */
+	private int descent(int child, int leaf) {
+		int grown = perimeter(child, leaf);
+		return (this.first[child] == NIL) ? grown : grown - perimeter(child, child);
+	}
+
+	/**
+	 * Helper method. Returns the perimeter of the smallest rectangle enclosing
+	 * those of two nodes.
+	 * 
+	 * @param a is the first node
+	 * @param b is the second node
+	 * @return the perimeter
+	 */
+	private int perimeter(int a, int b) {
+		int width = Math.max(this.maxX[a], this.maxX[b]) - Math.min(this.minX[a], this.minX[b]);
+		int height = Math.max(this.maxY[a], this.maxY[b]) - Math.min(this.minY[a], this.minY[b]);
+		return 2 * (width + height);
+	}
+
+	/**
+	 * Helper method. Rebalances the given node and its ancestors, and recomputes
+	 * their heights and rectangles.
+	 * 
+	 * @param node is the first node to fix
+	 */
+	private void refit(int node) {
+		while (node != NIL) {
+			node = balance(node);
+			fit(node);
+			node = this.parent[node];
+		}
+	}
+
+	/**
+	 * Helper method. Recomputes the height and the rectangle of an internal
+	 * node from those of its children.
+	 * 
+	 * @param node is the internal node
+	 */
+	private void fit(int node) {
+		int a = this.first[node], b = this.second[node];
+		this.height[node] = 1 + Math.max(this.height[a], this.height[b]);
+		set(node, Math.min(this.minX[a], this.minX[b]), Math.min(this.minY[a], this.minY[b]),
+				Math.max(this.maxX[a], this.maxX[b]), Math.max(this.maxY[a], this.maxY[b]));
+	}
+
+	/**
+	 * Helper method. If the heights of the children of a node differ by more
+	 * than 1, lifts the taller child into the place of the node, which takes the
+	 * shorter grandchild of that side. Returns the node now in that place.
+	 * 
+	 * @param a is the node to balance
+	 * @return the root of the balanced subtree
+	 */
+	private int balance(int a) {
+		if ((this.first[a] == NIL) || (this.height[a] < 2)) {
+			return a;
+		}
+		int b = this.first[a], c = this.second[a];
+		int difference = this.height[c] - this.height[b];
+		if ((difference <= 1) && (difference >= -1)) {
+			return a;
+		}
+		// Lift the taller child; it keeps its taller child and a takes the other
+		int up = (difference > 1) ? c : b;
+		int f = this.first[up], g = this.second[up];
+		int keep = (this.height[f] > this.height[g]) ? f : g;
+		int give = (keep == f) ? g : f;
+		int grandParent = this.parent[a];
+		this.parent[up] = grandParent;
+		if (grandParent == NIL) {
+			this.root = up;
+		} else if (this.first[grandParent] == a) {
+			this.first[grandParent] = up;
+		} else {
+			this.second[grandParent] = up;
+		}
+		this.first[up] = a;
+		this.second[up] = keep;
+		this.parent[a] = up;
+		if (up == c) {
+			this.second[a] = give;
+		} else {
+			this.first[a] = give;
+		}
+		this.parent[give] = a;
+		fit(a);
+		fit(up);
+		return up;
+	}
+
+	/**
+	 * Helper method. Sets the rectangle of a node.
+	 * 
+	 * @param node is the node
+	 * @param x0   is the x coordinate of the left edge
+	 * @param y0   is the y coordinate of the top edge
+	 * @param x1   is the x coordinate of the right edge
+	 * @param y1   is the y coordinate of the bottom edge
+	 */
+	private void set(int node, int x0, int y0, int x1, int y1) {
+		this.minX[node] = x0;
+		this.minY[node] = y0;
+		this.maxX[node] = x1;
+		this.maxY[node] = y1;
+	}
+
+	/**
+	 * Helper method. Returns a free node, from the free list if it is not empty,
+	 * growing the arrays if there is no room.
+	 * 
+	 * @return the index of the node
+	 */
+	private int allocate() {
+		if (this.free != NIL) {
+			int node = this.free;
+			this.free = this.parent[node];
+			return node;
+		}
+		if (this.next == this.parent.length) {
+			int length = 2 * this.parent.length;
+			this.minX = Arrays.copyOf(this.minX, length);
+			this.minY = Arrays.copyOf(this.minY, length);
+			this.maxX = Arrays.copyOf(this.maxX, length);
+			this.maxY = Arrays.copyOf(this.maxY, length);
+			this.first = Arrays.copyOf(this.first, length);
+			this.second = Arrays.copyOf(this.second, length);
+			this.parent = Arrays.copyOf(this.parent, length);
+			this.height = Arrays.copyOf(this.height, length);
+			this.item = Arrays.copyOf(this.item, length);
+		}
+		return this.next++;
+	}
+
+	/**
+	 * Helper method. Puts a node in the free list.
+	 * 
+	 * @param node is the node
+	 */
+	private void release(int node) {
+		this.parent[node] = this.free;
+		this.free = node;
+	}
+}
@@ -0,0 +1,210 @@
+import java.util.Arrays;
+
+/**
+ * Remembers, for pairs of figures that were found apart, how far the figures
+ * can move before they could touch, so the pair does not need to be tested
+ * again until then. When two figures do not intersect, their separation (see
+ * GraphicalFigure.separation()) is recorded together with the distances they
+ * had moved so far (see GraphicalFigure.getTravel()). Each pixel the figures
+ * move afterwards closes the gap between them by at most one pixel, so they
+ * cannot intersect while the sum of their distances is less than the recorded
+ * sum plus the separation.
+ * 
+ * Every change of offset counts towards the distance of a figure, including
+ * tentative moves that are undone, so the records stay conservative whatever
+ * way the figures are moved. Records are only kept for the pairs that were
+ * tested, in a hash table with open addressing keyed by the ids of the two
+ * figures, which must be different and not negative, so the memory taken
+ * grows with the number of pairs that meet and not with the square of the
+ * number of figures. The table never grows beyond its capacity: when it is
+ * full it is emptied, which only means that the pairs are tested again. The
+ * numbers of tests made and skipped are counted.
+ * 
+ * @author Bazillah Zargar
+ */
+public class SeparationTracker {
+
+	private static final int FIRST_SLOTS = 1024; // slots of a new table, a power of 2
+
+	private final int capacity; // largest number of records, half the largest number of slots
+	private long[] pairs; // ids (high << 32 | low) of the figures of each record, 0 for an empty slot
+	private long[] limits; // sum of the distances at which the figures of each record could touch
+	private int shift; // 64 minus the log of the number of slots, to hash the pairs
+	private int records; // number of records in the table
+	private long tests; // number of pairs tested
+	private long skips; // number of pairs that did not need to be tested
+
+	/**
+	 * Constructor that creates a tracker without records that keeps up to
+	 * 2^18 of them.
+	 * 
+	 */
+	public SeparationTracker() {
+		this(1 << 18);
+	}
+
+	/**
+	 * Constructor that creates a tracker without records that keeps up to the
+	 * given number of them, rounded up to a power of 2.
+	 * 
+	 * @param capacity is the largest number of records
+	 */
+	public SeparationTracker(int capacity) {
+		this.capacity = Integer.highestOneBit(Math.max(capacity, FIRST_SLOTS / 2) * 2 - 1);
+		resize(FIRST_SLOTS);
+	}
+
+	/**
+	 * Makes room for the given number of records, up to the capacity, so the
+	 * table does not grow again until it holds more.
+	 * 
+	 * @param records is the number of records to make room for
+	 */
+	public void reserve(int records) {
+		int slots = Integer.highestOneBit(Math.min(Math.max(records, 1), this.capacity) * 2 - 1) * 2;
+		if (slots > this.pairs.length)
+			resize(slots);
+	}
+
+	/**
+	 * Returns the number of records the tracker can hold.
+	 * 
+	 * @return capacity of the tracker
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Returns the number of slots in the table of records, which is what the
+	 * memory taken by the tracker grows with.
+	 * 
+	 * @return number of slots
+	 */
+	public int getSlots() {
+		return this.pairs.length;
+	}
+
+	/**
+	 * Returns the number of pairs that were tested.
+	 * 
+	 * @return number of tests
+	 */
+	public long getTests() {
+		return this.tests;
+	}
+
+	/**
+	 * Returns the number of pairs that were known to be apart without testing
+	 * them.
+	 * 
+	 * @return number of skipped tests
+	 */
+	public long getSkips() {
+		return this.skips;
+	}
+
+	/**
+	 * Returns true if the two figures intersect and false otherwise, like
+	 * a.intersects(b, cache), but without testing them if they were found far
+	 * enough apart the last time. When they do not intersect, their separation
+	 * is recorded.
+	 * 
+	 * @param a     is the first figure
+	 * @param b     is the second figure
+	 * @param cache is the cache of pixel tests, or null
+	 * @return true if the figures intersect and false otherwise
+	 */
+	public boolean intersects(GraphicalFigure a, GraphicalFigure b, CollisionCache cache) {
+		long pair = ((long) Math.max(a.getId(), b.getId()) << 32) | Math.min(a.getId(), b.getId());
+		int slot = find(pair);
+		long travel = a.getTravel() + b.getTravel();
+		if ((this.pairs[slot] == pair) && (travel < this.limits[slot])) {
+			++this.skips;
+			return false;
+		}
+		++this.tests;
+		if (a.intersects(b, cache)) {
+			return true;
+		}
+		int gap = a.separation(b);
+		if (gap > 0) {
+			if (this.pairs[slot] != pair) {
+				if (2 * (this.records + 1) > this.pairs.length) {
+					resize((this.pairs.length < 2 * this.capacity) ? 2 * this.pairs.length : this.pairs.length);
+					slot = find(pair);
+				}
+				this.pairs[slot] = pair;
+				++this.records;
+			}
+			this.limits[slot] = travel + gap;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if the two figures were found far enough apart the last time
+	 * that they cannot meet even after the first one moves the given distance,
+	 * so they need not be tested anywhere along that move.
+	 * 
+	 * @param a     is the figure that moves
+	 * @param b     is the other figure
+	 * @param extra is the distance a moves, along x plus along y
+	 * @return true if the figures are known to be apart and false otherwise
+	 */
+	public boolean apart(GraphicalFigure a, GraphicalFigure b, long extra) {
+		long pair = ((long) Math.max(a.getId(), b.getId()) << 32) | Math.min(a.getId(), b.getId());
+		int slot = find(pair);
+		if ((this.pairs[slot] == pair) && (a.getTravel() + b.getTravel() + extra < this.limits[slot])) {
+			++this.skips;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Helper method. Returns the slot of the record of the given pair, or the
+	 * empty slot where it would go. The table is never more than half full, so
+	 * there is always an empty slot.
+	 * 
+	 * @param pair is the ids of the two figures
+	 * @return slot of the pair
+	 */
+	private int find(long pair) {
+		int mask = this.pairs.length - 1;
+		int slot = (int) ((pair * 0x9E3779B97F4A7C15L) >>> this.shift);
+		while ((this.pairs[slot] != 0) && (this.pairs[slot] != pair)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Helper method. Makes a table with the given number of slots, moving the
+	 * records into it if it is larger than the current one. A table of the same
+	 * size is emptied in place.
+	 * 
+	 * @param slots is the number of slots, a power of 2
+	 */
+	private void resize(int slots) {
+		if ((this.pairs != null) && (slots == this.pairs.length)) {
+			Arrays.fill(this.pairs, 0);
+			this.records = 0;
+			return;
+		}
+		long[] oldPairs = this.pairs, oldLimits = this.limits;
+		this.pairs = new long[slots];
+		this.limits = new long[slots];
+		this.shift = 64 - Integer.numberOfTrailingZeros(slots);
+		this.records = 0;
+		if (oldPairs != null) {
+			for (int i = 0; i < oldPairs.length; ++i)
+				if (oldPairs[i] != 0) {
+					int slot = find(oldPairs[i]);
+					this.pairs[slot] = oldPairs[i];
+					this.limits[slot] = oldLimits[i];
+					++this.records;
+				}
+		}
+	}
+}
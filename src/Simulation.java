@@ -0,0 +1,175 @@
+import java.util.Random;
+
+/**
+ * Plays the game on a World without drawing it: in each tick every figure
+ * moved by the computer makes one move in its direction, in one batch, and
+ * picks a new random direction when it is stopped, destroying the user
+ * figure it ran into. User figures are moved on request and destroy the
+ * targets they run into. Requests may come from any thread; they wait in an
+ * InputQueue and are played at the start of the next tick, on the thread that
+ * plays the game. Whatever draws the game listens to the World.
+ * 
+ * Run on its own, it reads a figure file and plays a number of ticks as fast
+ * as it can, with no window, and prints how long they took:
+ * 
+ * java -Djava.awt.headless=true Simulation figs [width height [ticks]]
+ * 
+ * @author Bazillah Zargar
+ */
+public class Simulation {
+
+	private static final String MOBILE_FIGURE = "user"; // type of figures moved by the user
+	private static final String COMPUTER = "computer"; // type of figures moved by the computer
+	private static final String TARGET = "target"; // type of figures destroyed by the user figures
+	private static final String FIGURE_KILLED = "killed"; // type of figures that were destroyed
+	private static final int SUCCESS = -2; // the figure was moved the whole way
+	private static final int HIT_BORDER = -1; // the figure stopped at the border
+	private static final int LEFT = 0; // directions of the moves
+	private static final int RIGHT = 1;
+	private static final int UP = 2;
+
+	private final World world; // figures of the game
+	private final Random generator; // chooses the directions of the computer figures
+	private final InputQueue input = new InputQueue(); // moves asked for by the user
+	private int[] progFig; // figures moved by the computer
+	private int ncomp; // number of figures moved by the computer
+	private int[] mobileFigs; // figures moved by the user
+	private int numMobile; // number of figures moved by the user
+	private int[] dir; // direction in which each computer figure moves
+	private int[] dx, dy; // move of each computer figure in the next tick
+	private int[] codes; // result of the move of each computer figure
+	private int step = 4; // length in pixels of each move of a computer figure
+	private long ticks; // number of ticks played
+
+	/**
+	 * Constructor that prepares a game on the given world, giving each computer
+	 * figure a random direction.
+	 * 
+	 * @param world     is the world with the figures
+	 * @param generator is the random generator that chooses the directions
+	 */
+	public Simulation(World world, Random generator) {
+		this.world = world;
+		this.generator = generator;
+		GraphicalFigure[] figs = world.getFigures();
+		int numFigures = world.getNumFigures();
+		this.progFig = new int[numFigures];
+		this.mobileFigs = new int[numFigures];
+		this.dir = new int[numFigures];
+		this.dx = new int[numFigures];
+		this.dy = new int[numFigures];
+		this.codes = new int[numFigures];
+		for (int i = 0; i < numFigures; ++i)
+			if (figs[i].getType().equals(COMPUTER)) {
+				this.dir[this.ncomp] = generator.nextInt(3);
+				this.progFig[this.ncomp++] = i;
+			} else if (figs[i].getType().equals(MOBILE_FIGURE))
+				this.mobileFigs[this.numMobile++] = i;
+	}
+
+	/**
+	 * Plays the moves of the user figures asked for since the last tick, then
+	 * moves every figure moved by the computer one step in its direction, all of
+	 * them in one batch. Those that were stopped choose a new direction, and
+	 * user figures they ran into are destroyed.
+	 * 
+	 */
+	public void tick() {
+		for (int k = 0, n = this.input.drain(); k < n; ++k)
+			moveUsers(this.input.getDx(k), this.input.getDy(k));
+		for (int i = 0; i < this.ncomp; ++i) {
+			this.dx[i] = (this.dir[i] == LEFT) ? -this.step : (this.dir[i] == RIGHT) ? this.step : 0;
+			this.dy[i] = (this.dir[i] == UP) ? -this.step
+					: ((this.dir[i] == LEFT) || (this.dir[i] == RIGHT)) ? 0 : this.step;
+		}
+		this.world.getMover().moveAll(this.world.getFigures(), this.world.getNumFigures(), this.progFig, this.ncomp,
+				this.dx, this.dy, this.codes);
+		for (int i = 0; i < this.ncomp; ++i)
+			if (this.codes[i] != SUCCESS)
+				this.dir[i] = resolveCollision(this.codes[i], this.dir[i]);
+		++this.ticks;
+	}
+
+	/**
+	 * Asks for every user figure to be moved by (dx, dy) at the start of the next
+	 * tick. It may be called from any thread.
+	 * 
+	 * @param dx is the move to the right
+	 * @param dy is the move down
+	 */
+	public void requestMove(int dx, int dy) {
+		this.input.add(dx, dy);
+	}
+
+	/**
+	 * Moves every user figure that was not destroyed by (dx, dy). The targets
+	 * they run into are destroyed.
+	 * 
+	 * @param dx is the move to the right
+	 * @param dy is the move down
+	 */
+	public void moveUsers(int dx, int dy) {
+		GraphicalFigure[] figs = this.world.getFigures();
+		for (int i = 0; i < this.numMobile; ++i)
+			if (!figs[this.mobileFigs[i]].getType().equals(FIGURE_KILLED)) {
+				int b = this.world.getMover().move(figs, this.world.getNumFigures(), this.mobileFigs[i], dx, dy);
+				if ((b >= 0) && figs[b].getType().equals(TARGET))
+					this.world.kill(b);
+			}
+	}
+
+	/**
+	 * Makes the moves of the computer figures one pixel longer.
+	 * 
+	 */
+	public void increaseStep() {
+		++this.step;
+	}
+
+	/**
+	 * Returns the number of ticks played so far.
+	 * 
+	 * @return number of ticks
+	 */
+	public long getTicks() {
+		return this.ticks;
+	}
+
+	/**
+	 * Helper method. Destroys the user figure a computer figure ran into, if
+	 * that is what stopped it, and returns the direction in which the computer
+	 * figure will next move.
+	 * 
+	 * @param code is the result of the move
+	 * @param dir  is the direction of the move
+	 * @return the new direction
+	 */
+	private int resolveCollision(int code, int dir) {
+		GraphicalFigure[] figs = this.world.getFigures();
+		if ((code != HIT_BORDER) && figs[code].getType().equals(MOBILE_FIGURE))
+			this.world.kill(code);
+		return (dir + this.generator.nextInt(3)) % 4;
+	}
+
+	/* ====================================== */
+	public static void main(String args[]) throws Exception {
+		/* ====================================== */
+		int width = 500, height = 500, ticks = 10000;
+		if (args.length >= 3) {
+			width = Integer.parseInt(args[1]);
+			height = Integer.parseInt(args[2]);
+		}
+		if (args.length >= 4)
+			ticks = Integer.parseInt(args[3]);
+		FigureReader reader = new FigureReader(args[0]);
+		World world = new World(width, height, reader.getFigures(), reader.getNumFigures());
+		Simulation game = new Simulation(world, new Random(Long.getLong("pacman.seed", 1)));
+		long start = System.nanoTime();
+		for (int t = 0; t < ticks; ++t)
+			game.tick();
+		long time = System.nanoTime() - start;
+		System.out.printf("%d ticks of %d figures in %.1f ms, %.1f us per tick%n", ticks, world.getNumFigures(),
+				time / 1e6, time / 1e3 / ticks);
+		world.report();
+	}
+}
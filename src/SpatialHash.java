@@ -0,0 +1,213 @@
+import java.util.Arrays;
+
+/**
+ * Finds the figures that may intersect a given one by dividing the plane into
+ * square cells and remembering which cells the enclosing rectangle of each
+ * figure touches. Two figures whose rectangles intersect touch a common cell,
+ * so only the figures of the cells touched by a figure need to be tested
+ * against it.
+ * 
+ * The plane is unbounded, so cells are not stored one by one: cell (cx, cy) is
+ * hashed into one of a fixed number of buckets, and a bucket holds the indices
+ * of the figures of all the cells hashed into it. Figures of other cells
+ * sharing a bucket are reported as candidates too, which costs an extra test
+ * but never misses a figure. When a figure moves, it is only taken out of the
+ * buckets it leaves and put in the ones it enters, so a move within a cell
+ * costs a few comparisons. Queries reuse the arrays of the grid and never
+ * allocate memory.
+ * 
+ * @author Bazillah Zargar
+ */
+public class SpatialHash implements BroadphaseADT {
+
+	private static final String FIGURE_KILLED = "killed"; // type of figures that were destroyed
+
+	private final int shift; // cells are 2^shift pixels wide and high
+	private final int[][] buckets; // indices of the figures of each bucket
+	private final int[] counts; // number of figures in each bucket
+	private int[] fromX, fromY, toX, toY; // cells touched by each figure, empty if toX < fromX
+	private int[] seen; // query in which each figure was last reported
+	private int query; // stamp of the current query, restarted when it wraps around
+	private long queries; // number of calls to candidates
+	private long found; // number of candidates returned
+
+	/**
+	 * Constructor that creates an empty grid. The cell size is rounded up to a
+	 * power of 2 and so is the number of buckets.
+	 * 
+	 * @param cellSize is the width and height of the cells in pixels
+	 * @param buckets  is the number of buckets
+	 */
+	public SpatialHash(int cellSize, int buckets) {
+		this.shift = 32 - Integer.numberOfLeadingZeros(Math.max(cellSize, 1) - 1);
+		int size = Integer.highestOneBit(Math.max(buckets, 1) * 2 - 1);
+		this.buckets = new int[size][4];
+		this.counts = new int[size];
+		this.fromX = new int[0];
+		this.fromY = new int[0];
+		this.toX = new int[0];
+		this.toY = new int[0];
+		this.seen = new int[0];
+	}
+
+	/**
+	 * Records the enclosing rectangle of figure figs[fignum] at its current
+	 * offset, moving the figure to the buckets of the cells it now touches.
+	 * Killed figures are taken out of all the buckets.
+	 * 
+	 * @param figs   is the array of figures
+	 * @param fignum is the index of the figure that was added or moved
+	 */
+	public void update(GraphicalFigure[] figs, int fignum) {
+		if (fignum >= this.fromX.length) {
+			grow(fignum + 1);
+		}
+		GraphicalFigure fig = figs[fignum];
+		int x0, y0, x1, y1;
+		if (fig.getType().equals(FIGURE_KILLED)) {
+			x0 = y0 = 0;
+			x1 = y1 = -1;
+		} else {
+			x0 = fig.getX() >> this.shift;
+			y0 = fig.getY() >> this.shift;
+			x1 = (fig.getX() + fig.getWidth()) >> this.shift;
+			y1 = (fig.getY() + fig.getHeight()) >> this.shift;
+		}
+		if ((x0 == this.fromX[fignum]) && (y0 == this.fromY[fignum]) && (x1 == this.toX[fignum])
+				&& (y1 == this.toY[fignum])) {
+			return;
+		}
+
+		// Leave the cells that are no longer touched and enter the new ones
+		for (int cx = this.fromX[fignum]; cx <= this.toX[fignum]; ++cx)
+			for (int cy = this.fromY[fignum]; cy <= this.toY[fignum]; ++cy)
+				if ((cx < x0) || (cx > x1) || (cy < y0) || (cy > y1))
+					remove(bucket(cx, cy), fignum);
+		for (int cx = x0; cx <= x1; ++cx)
+			for (int cy = y0; cy <= y1; ++cy)
+				if ((cx < this.fromX[fignum]) || (cx > this.toX[fignum]) || (cy < this.fromY[fignum])
+						|| (cy > this.toY[fignum]))
+					add(bucket(cx, cy), fignum);
+		this.fromX[fignum] = x0;
+		this.fromY[fignum] = y0;
+		this.toX[fignum] = x1;
+		this.toY[fignum] = y1;
+	}
+
+	/**
+	 * Stores in result, in increasing order, the indices of the figures in the
+	 * buckets of the cells touched by the rectangle swept by figure figs[fignum]
+	 * when it moves by (dx, dy) from its current offset, and returns how many
+	 * there are.
+	 * 
+	 * @param figs   is the array of figures
+	 * @param fignum is the index of the figure being moved
+	 * @param dx     is the displacement of the figure to the right
+	 * @param dy     is the displacement of the figure down
+	 * @param result is the array where the indices are stored
+	 * @return the number of candidates
+	 */
+	public int candidates(GraphicalFigure[] figs, int fignum, int dx, int dy, int[] result) {
+		GraphicalFigure fig = figs[fignum];
+		int x0 = (fig.getX() + Math.min(dx, 0)) >> this.shift, y0 = (fig.getY() + Math.min(dy, 0)) >> this.shift;
+		int x1 = (fig.getX() + fig.getWidth() + Math.max(dx, 0)) >> this.shift;
+		int y1 = (fig.getY() + fig.getHeight() + Math.max(dy, 0)) >> this.shift;
+		if (++this.query == 0) {
+			Arrays.fill(this.seen, 0);
+			this.query = 1;
+		}
+		int n = 0;
+		for (int cx = x0; cx <= x1; ++cx)
+			for (int cy = y0; cy <= y1; ++cy) {
+				int b = bucket(cx, cy);
+				int[] members = this.buckets[b];
+				for (int k = 0; k < this.counts[b]; ++k) {
+					int i = members[k];
+					if ((i != fignum) && (this.seen[i] != this.query)) {
+						this.seen[i] = this.query;
+						result[n++] = i;
+					}
+				}
+			}
+		Arrays.sort(result, 0, n);
+		++this.queries;
+		this.found += n;
+		return n;
+	}
+
+	/**
+	 * Returns the number of calls to candidates so far.
+	 * 
+	 * @return number of queries
+	 */
+	public long getQueries() {
+		return this.queries;
+	}
+
+	/**
+	 * Returns the number of candidates returned so far.
+	 * 
+	 * @return number of candidates
+	 */
+	public long getCandidates() {
+		return this.found;
+	}
+
+	/**
+	 * Helper method. Returns the bucket of cell (cx, cy).
+	 * 
+	 * @param cx is the column of the cell
+	 * @param cy is the row of the cell
+	 * @return the bucket of the cell
+	 */
+	private int bucket(int cx, int cy) {
+		int hash = cx * 0x9E3779B1 + cy * 0x85EBCA77;
+		return (hash ^ (hash >>> 15)) & (this.counts.length - 1);
+	}
+
+	/**
+	 * Helper method. Adds a figure to a bucket.
+	 * 
+	 * @param b      is the bucket
+	 * @param fignum is the index of the figure
+	 */
+	private void add(int b, int fignum) {
+		if (this.counts[b] == this.buckets[b].length) {
+			this.buckets[b] = Arrays.copyOf(this.buckets[b], this.counts[b] * 2);
+		}
+		this.buckets[b][this.counts[b]++] = fignum;
+	}
+
+	/**
+	 * Helper method. Removes a figure from a bucket, replacing it with the last
+	 * figure of the bucket.
+	 * 
+	 * @param b      is the bucket
+	 * @param fignum is the index of the figure
+	 */
+	private void remove(int b, int fignum) {
+		int[] members = this.buckets[b];
+		for (int k = 0; k < this.counts[b]; ++k)
+			if (members[k] == fignum) {
+				members[k] = members[--this.counts[b]];
+				return;
+			}
+	}
+
+	/**
+	 * Helper method. Makes room for the figures with indices smaller than the
+	 * given number. New figures touch no cells.
+	 * 
+	 * @param figures is the number of figures
+	 */
+	private void grow(int figures) {
+		int old = this.fromX.length, size = Math.max(figures, old * 2);
+		this.fromX = Arrays.copyOf(this.fromX, size);
+		this.fromY = Arrays.copyOf(this.fromY, size);
+		this.toX = Arrays.copyOf(this.toX, size);
+		this.toY = Arrays.copyOf(this.toY, size);
+		this.seen = Arrays.copyOf(this.seen, size);
+		Arrays.fill(this.toX, old, size, -1);
+		Arrays.fill(this.toY, old, size, -1);
+	}
+}
@@ -0,0 +1,81 @@
+import java.awt.image.BufferedImage;
+
+/**
+ * Holds what all the figures read from the same image file share: the pixels
+ * of the image, stored as runs, the image used to draw the figures and the
+ * image used to erase them. None of them is modified after the sprite is
+ * created, so any number of figures can use the same sprite, each with its own
+ * offset and type.
+ * 
+ * @author Bazillah Zargar
+ */
+public class Sprite {
+
+	private final int width; // width of the image
+	private final int height; // height of the image
+	private final PixelRuns runs; // pixels of the image that are not transparent
+	private final BufferedImage image; // image used to draw the figures
+	private final BufferedImage erased; // image used to erase the figures
+
+	/**
+	 * Constructor that creates a sprite with the given pixels and images.
+	 * 
+	 * @param width  is the width of the image
+	 * @param height is the height of the image
+	 * @param runs   is the runs of the pixels that are not transparent
+	 * @param image  is the image used to draw the figures
+	 * @param erased is the image used to erase the figures
+	 */
+	public Sprite(int width, int height, PixelRuns runs, BufferedImage image, BufferedImage erased) {
+		this.width = width;
+		this.height = height;
+		this.runs = runs;
+		this.image = image;
+		this.erased = erased;
+	}
+
+	/**
+	 * Returns the width of the image.
+	 * 
+	 * @return width of the image
+	 */
+	public int getWidth() {
+		return this.width;
+	}
+
+	/**
+	 * Returns the height of the image.
+	 * 
+	 * @return height of the image
+	 */
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * Returns the runs of the pixels of the image that are not transparent.
+	 * 
+	 * @return runs of the pixels
+	 */
+	public PixelRuns getRuns() {
+		return this.runs;
+	}
+
+	/**
+	 * Returns the image used to draw the figures.
+	 * 
+	 * @return image used to draw the figures
+	 */
+	public BufferedImage getImage() {
+		return this.image;
+	}
+
+	/**
+	 * Returns the image used to erase the figures.
+	 * 
+	 * @return image used to erase the figures
+	 */
+	public BufferedImage getErased() {
+		return this.erased;
+	}
+}
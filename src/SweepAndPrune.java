@@ -0,0 +1,298 @@
+import java.util.Arrays;
+
+/**
+ * Finds the figures that may intersect a given one by keeping the ends of
+ * their enclosing rectangles sorted along each axis. Two rectangles intersect
+ * when their intervals overlap along both axes, and those intervals only start
+ * or stop overlapping when an end of one of them passes an end of the other in
+ * the sorted lists. When a figure moves, its ends are moved to their new places
+ * by insertion sort, and each end passed that starts or stops an overlap adds
+ * or removes the pair in the lists of overlapping figures kept for each figure.
+ * 
+ * Figures move a few pixels at a time, so their ends pass few others and an
+ * update costs little, however the figures are spread: clusters of figures
+ * only cost the ends that are actually passed. The ends of each axis are kept
+ * in a single array of keys, twice the coordinate plus 1 for the ends of the
+ * intervals, so that an interval that ends where another one starts still
+ * overlaps it, as in GraphicalFigure.intersects(). Killed figures are moved
+ * past all the others, where they overlap no live figure.
+ * 
+ * candidates() moves the ends of the figure to those of the rectangle swept by
+ * the move before reading its list, so update() must be called once the
+ * figure has moved.
+ * 
+ * @author Bazillah Zargar
+ */
+public class SweepAndPrune implements BroadphaseADT {
+
+	private static final String FIGURE_KILLED = "killed"; // type of figures that were destroyed
+	private static final long FAR = 2L * Integer.MAX_VALUE; // key of the ends of killed figures
+
+	private long[][] keys; // keys of the ends of each axis, in increasing order
+	private int[][] owners; // index of the figure of each end of each axis, plus 1 for the end of the interval
+	private int[][] first; // position of the start of the interval of each figure along each axis
+	private int[][] last; // position of the end of the interval of each figure along each axis
+	private int[][] partners; // figures whose rectangles intersect that of each figure
+	private int[] partnerCount; // number of figures in the list of each figure
+	private int figures; // number of figures added so far
+	private long queries; // number of calls to candidates
+	private long found; // number of candidates returned
+
+	/**
+	 * Constructor that creates empty lists.
+	 * 
+	 */
+	public SweepAndPrune() {
+		this.keys = new long[2][0];
+		this.owners = new int[2][0];
+		this.first = new int[2][0];
+		this.last = new int[2][0];
+		this.partners = new int[0][];
+		this.partnerCount = new int[0];
+	}
+
+	/**
+	 * Records the enclosing rectangle of figure figs[fignum] at its current
+	 * offset, moving its ends to their new places along both axes. Figures not
+	 * seen before are first added after all the others.
+	 * 
+	 * @param figs   is the array of figures
+	 * @param fignum is the index of the figure that was added or moved
+	 */
+	public void update(GraphicalFigure[] figs, int fignum) {
+		record(figs, fignum, 0, 0);
+	}
+
+	/**
+	 * Gives figure figs[fignum] the rectangle it sweeps when it moves by (dx, dy)
+	 * from its current offset and stores in result, in increasing order, the
+	 * indices of the figures whose rectangles intersect that one, returning how
+	 * many there are.
+	 * 
+	 * @param figs   is the array of figures
+	 * @param fignum is the index of the figure being moved
+	 * @param dx     is the displacement of the figure to the right
+	 * @param dy     is the displacement of the figure down
+	 * @param result is the array where the indices are stored
+	 * @return the number of candidates
+	 */
+	public int candidates(GraphicalFigure[] figs, int fignum, int dx, int dy, int[] result) {
+		record(figs, fignum, dx, dy);
+		int n = this.partnerCount[fignum];
+		System.arraycopy(this.partners[fignum], 0, result, 0, n);
+		Arrays.sort(result, 0, n);
+		++this.queries;
+		this.found += n;
+		return n;
+	}
+
+	/**
+	 * Returns the number of calls to candidates so far.
+	 * 
+	 * @return number of queries
+	 */
+	public long getQueries() {
+		return this.queries;
+	}
+
+	/**
+	 * Returns the number of candidates returned so far.
+	 * 
+	 * @return number of candidates
+	 */
+	public long getCandidates() {
+		return this.found;
+	}
+
+	/**
+	 * Helper method. Moves the ends of figure figs[fignum] to those of the
+	 * rectangle it sweeps when it moves by (dx, dy) from its current offset.
+	 * Figures not seen before are first added after all the others.
+	 * 
+	 * @param figs   is the array of figures
+	 * @param fignum is the index of the figure
+	 * @param dx     is the displacement of the figure to the right
+	 * @param dy     is the displacement of the figure down
+	 */
+	private void record(GraphicalFigure[] figs, int fignum, int dx, int dy) {
+		while (fignum >= this.figures) {
+			add(this.figures);
+		}
+		GraphicalFigure fig = figs[fignum];
+		if (fig.getType().equals(FIGURE_KILLED)) {
+			move(0, fignum, FAR, FAR + 1);
+			move(1, fignum, FAR, FAR + 1);
+		} else {
+			move(0, fignum, 2L * (fig.getX() + Math.min(dx, 0)),
+					2L * (fig.getX() + fig.getWidth() + Math.max(dx, 0)) + 1);
+			move(1, fignum, 2L * (fig.getY() + Math.min(dy, 0)),
+					2L * (fig.getY() + fig.getHeight() + Math.max(dy, 0)) + 1);
+		}
+	}
+
+	/**
+	 * Helper method. Adds a figure after all the others, where its rectangle
+	 * intersects no other.
+	 * 
+	 * @param fignum is the index of the figure, equal to the number of figures
+	 */
+	private void add(int fignum) {
+		if (fignum == this.partnerCount.length) {
+			int size = Math.max(4, 2 * fignum);
+			for (int axis = 0; axis < 2; ++axis) {
+				this.keys[axis] = Arrays.copyOf(this.keys[axis], 2 * size);
+				this.owners[axis] = Arrays.copyOf(this.owners[axis], 2 * size);
+				this.first[axis] = Arrays.copyOf(this.first[axis], size);
+				this.last[axis] = Arrays.copyOf(this.last[axis], size);
+			}
+			this.partners = Arrays.copyOf(this.partners, size);
+			this.partnerCount = Arrays.copyOf(this.partnerCount, size);
+		}
+		this.partners[fignum] = new int[4];
+		++this.figures;
+		// Beyond the killed figures and those added before, so the lists stay sorted
+		for (int axis = 0; axis < 2; ++axis) {
+			int end = 2 * fignum;
+			this.keys[axis][end] = FAR + 2 + 4L * fignum;
+			this.owners[axis][end] = 2 * fignum;
+			this.first[axis][fignum] = end;
+			this.keys[axis][end + 1] = FAR + 3 + 4L * fignum;
+			this.owners[axis][end + 1] = 2 * fignum + 1;
+			this.last[axis][fignum] = end + 1;
+		}
+	}
+
+	/**
+	 * Helper method. Gives new keys to the ends of a figure along an axis and
+	 * moves them to their places, the one in the direction of the move first so
+	 * that the interval is never turned inside out.
+	 * 
+	 * @param axis   is 0 for x and 1 for y
+	 * @param fignum is the index of the figure
+	 * @param low    is the key of the start of the interval
+	 * @param high   is the key of the end of the interval
+	 */
+	private void move(int axis, int fignum, long low, long high) {
+		int from = this.first[axis][fignum], to = this.last[axis][fignum];
+		if ((this.keys[axis][from] == low) && (this.keys[axis][to] == high)) {
+			return;
+		}
+		boolean left = low < this.keys[axis][from];
+		this.keys[axis][from] = low;
+		this.keys[axis][to] = high;
+		if (left) {
+			sift(axis, from);
+			sift(axis, this.last[axis][fignum]);
+		} else {
+			sift(axis, to);
+			sift(axis, this.first[axis][fignum]);
+		}
+	}
+
+	/**
+	 * Helper method. Moves the end at the given position of an axis to its place
+	 * by insertion sort, updating the lists of overlapping figures for every end
+	 * it passes.
+	 * 
+	 * @param axis is 0 for x and 1 for y
+	 * @param pos  is the position of the end
+	 */
+	private void sift(int axis, int pos) {
+		long[] key = this.keys[axis];
+		int[] owner = this.owners[axis];
+		long k = key[pos];
+		int end = owner[pos];
+		while ((pos > 0) && (key[pos - 1] > k)) {
+			// A start passing an end to its left starts an overlap; an end passing a start stops one
+			int other = owner[pos - 1];
+			if ((end & 1) != (other & 1)) {
+				pass(axis, end >>> 1, other >>> 1, (end & 1) == 0);
+			}
+			place(axis, pos, key[pos - 1], other);
+			--pos;
+		}
+		int size = 2 * this.figures;
+		while ((pos + 1 < size) && (key[pos + 1] < k)) {
+			// An end passing a start to its right starts an overlap; a start passing an end stops one
+			int other = owner[pos + 1];
+			if ((end & 1) != (other & 1)) {
+				pass(axis, end >>> 1, other >>> 1, (end & 1) == 1);
+			}
+			place(axis, pos, key[pos + 1], other);
+			++pos;
+		}
+		place(axis, pos, k, end);
+	}
+
+	/**
+	 * Helper method. Stores an end at a position of an axis.
+	 * 
+	 * @param axis  is 0 for x and 1 for y
+	 * @param pos   is the position
+	 * @param key   is the key of the end
+	 * @param owner is the index of the figure of the end, plus 1 for the end of the interval
+	 */
+	private void place(int axis, int pos, long key, int owner) {
+		this.keys[axis][pos] = key;
+		this.owners[axis][pos] = owner;
+		if ((owner & 1) == 0) {
+			this.first[axis][owner >>> 1] = pos;
+		} else {
+			this.last[axis][owner >>> 1] = pos;
+		}
+	}
+
+	/**
+	 * Helper method. Records that the intervals of two figures started or stopped
+	 * overlapping along an axis. If they overlap along the other axis, the pair
+	 * is added to or removed from the lists of overlapping figures.
+	 * 
+	 * @param axis   is the axis along which the overlap changed
+	 * @param a      is the index of the first figure
+	 * @param b      is the index of the second figure
+	 * @param starts is true if the overlap starts and false if it stops
+	 */
+	private void pass(int axis, int a, int b, boolean starts) {
+		int other = 1 - axis;
+		long[] key = this.keys[other];
+		if ((key[this.first[other][a]] < key[this.last[other][b]])
+				&& (key[this.first[other][b]] < key[this.last[other][a]])) {
+			if (starts) {
+				link(a, b);
+				link(b, a);
+			} else {
+				unlink(a, b);
+				unlink(b, a);
+			}
+		}
+	}
+
+	/**
+	 * Helper method. Adds figure b to the list of figure a.
+	 * 
+	 * @param a is the index of the figure whose list changes
+	 * @param b is the index of the figure added
+	 */
+	private void link(int a, int b) {
+		if (this.partnerCount[a] == this.partners[a].length) {
+			this.partners[a] = Arrays.copyOf(this.partners[a], 2 * this.partnerCount[a]);
+		}
+		this.partners[a][this.partnerCount[a]++] = b;
+	}
+
+	/**
+	 * Helper method. Removes figure b from the list of figure a, replacing it
+	 * with the last figure of the list.
+	 * 
+	 * @param a is the index of the figure whose list changes
+	 * @param b is the index of the figure removed
+	 */
+	private void unlink(int a, int b) {
+		int[] list = this.partners[a];
+		for (int k = 0; k < this.partnerCount[a]; ++k)
+			if (list[k] == b) {
+				list[k] = list[--this.partnerCount[a]];
+				return;
+			}
+	}
+}
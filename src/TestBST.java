@@ -1,6 +1,8 @@
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Random;
 
 import javax.imageio.ImageIO;
 
@@ -246,6 +248,357 @@ public class TestBST {
 			System.out.println("Test 16 failed");
 		}
 
+		/* Tests with a self-balancing tree */
+		int n = 4095;
+		tree = new BinarySearchTree(true);
+
+		try {
+			// Insert keys in sorted order, which degenerates an unbalanced tree
+			for (int i = 0; i < n; ++i)
+				tree.put(tree.getRoot(), new Pixel(new Location(i / 64, i % 64), i));
+			if (tree.getRoot().getHeight() <= 13)
+				System.out.println("Test 17 passed");
+			else
+				System.out.println("Test 17 failed");
+		} catch (Exception e) {
+			System.out.println("Test 17 failed");
+		}
+
+		try {
+			// Remove every other key and check the tree is still balanced and complete
+			for (int i = 0; i < n; i += 2)
+				tree.remove(tree.getRoot(), new Location(i / 64, i % 64));
+			boolean found = true;
+			for (int i = 0; i < n; ++i) {
+				res = tree.get(tree.getRoot(), new Location(i / 64, i % 64));
+				if ((i % 2 == 0) != (res == null))
+					found = false;
+			}
+			if (found && (tree.getRoot().getHeight() <= 12))
+				System.out.println("Test 18 passed");
+			else
+				System.out.println("Test 18 failed");
+		} catch (Exception e) {
+			System.out.println("Test 18 failed");
+		}
+
+		try {
+			res = tree.successor(tree.getRoot(), new Location(10, 63));
+			Pixel pred = tree.predecessor(tree.getRoot(), new Location(11, 1));
+			if ((res.getLocation().compareTo(new Location(11, 1)) == 0)
+					&& (pred.getLocation().compareTo(new Location(10, 63)) == 0))
+				System.out.println("Test 19 passed");
+			else
+				System.out.println("Test 19 failed");
+		} catch (Exception e) {
+			System.out.println("Test 19 failed");
+		}
+
+		/* Tests with very large inputs */
+		n = 20000;
+		tree = new BinarySearchTree();
+
+		try {
+			// Sorted insertions make the unbalanced tree a chain of n nodes
+			for (int i = 0; i < n; ++i)
+				tree.put(tree.getRoot(), new Pixel(new Location(i, 0), i));
+			res = tree.get(tree.getRoot(), new Location(n - 1, 0));
+			Pixel succ = tree.successor(tree.getRoot(), new Location(n / 2, 0));
+			Pixel pred = tree.predecessor(tree.getRoot(), new Location(n / 2, 0));
+			if ((res != null) && (res.getColor() == n - 1) && (succ.getColor() == n / 2 + 1)
+					&& (pred.getColor() == n / 2 - 1)
+					&& (tree.successor(tree.getRoot(), new Location(n - 1, 0)) == null))
+				System.out.println("Test 20 passed");
+			else
+				System.out.println("Test 20 failed");
+		} catch (Throwable e) {
+			System.out.println("Test 20 failed");
+		}
+
+		try {
+			for (int i = n - 1; i >= 0; --i)
+				tree.remove(tree.getRoot(), new Location(i, 0));
+			if (tree.getRoot().isLeaf())
+				System.out.println("Test 21 passed");
+			else
+				System.out.println("Test 21 failed");
+		} catch (Throwable e) {
+			System.out.println("Test 21 failed");
+		}
+
+		n = 500000;
+		tree = new BinarySearchTree(true);
+
+		try {
+			for (int i = 0; i < n; ++i)
+				tree.put(tree.getRoot(), new Pixel(new Location(i % 1000, i / 1000), i));
+			boolean found = true;
+			for (int i = 0; i < n; i += 7) {
+				res = tree.get(tree.getRoot(), new Location(i % 1000, i / 1000));
+				if ((res == null) || (res.getColor() != i))
+					found = false;
+			}
+			for (int i = 0; i < n; i += 2)
+				tree.remove(tree.getRoot(), new Location(i % 1000, i / 1000));
+			res = tree.successor(tree.getRoot(), new Location(500, 10));
+			if (found && (res.getLocation().compareTo(new Location(501, 0)) == 0)
+					&& (tree.getRoot().getHeight() <= 27))
+				System.out.println("Test 22 passed");
+			else
+				System.out.println("Test 22 failed");
+		} catch (Throwable e) {
+			System.out.println("Test 22 failed");
+		}
+
+		// All leaves are shared, so n pixels take n nodes plus one leaf
+		n = 1000;
+		tree = new BinarySearchTree(true);
+		try {
+			for (int i = 0; i < n; ++i)
+				tree.put(tree.getRoot(), new Pixel(new Location(i, i), i));
+			for (int i = 0; i < n; i += 3)
+				tree.remove(tree.getRoot(), new Location(i, i));
+			int remaining = n - (n + 2) / 3;
+			if (countNodes(tree.getRoot(), new IdentityHashMap<BinaryNode, Boolean>()) == remaining + 1)
+				System.out.println("Test 23 passed");
+			else
+				System.out.println("Test 23 failed");
+		} catch (Exception e) {
+			System.out.println("Test 23 failed");
+		}
+
+		// Packed keys keep the column order of Location.compareTo, also for
+		// negative coordinates
+		try {
+			int coords[] = { Integer.MIN_VALUE, -1000, -1, 0, 1, 1000, Integer.MAX_VALUE };
+			boolean ordered = true;
+			for (int i = 0; i < coords.length * coords.length; ++i)
+				for (int j = 0; j < coords.length * coords.length; ++j) {
+					Location a = new Location(coords[i / coords.length], coords[i % coords.length]);
+					Location b = new Location(coords[j / coords.length], coords[j % coords.length]);
+					if ((Long.compare(a.key(), b.key()) != a.compareTo(b)) || (Location.keyX(a.key()) != a.xCoord())
+							|| (Location.keyY(a.key()) != a.yCoord()))
+						ordered = false;
+				}
+			tree = new BinarySearchTree(true);
+			for (int i = 0; i < coords.length; ++i)
+				tree.put(tree.getRoot(), coords[i], -coords[i], i);
+			res = tree.get(tree.getRoot(), -1, 1);
+			Pixel succ = tree.successor(tree.getRoot(), -1, 1);
+			Pixel pred = tree.predecessor(tree.getRoot(), -1, 1);
+			if (ordered && (res.getColor() == 2) && (succ.getColor() == 3) && (pred.getColor() == 1)
+					&& (tree.get(tree.getRoot(), 1, 1) == null))
+				System.out.println("Test 24 passed");
+			else
+				System.out.println("Test 24 failed");
+		} catch (Exception e) {
+			System.out.println("Test 24 failed");
+		}
+
+		// The array-backed tree behaves like the node-based one
+		try {
+			BinarySearchTreeADT compact = new ArrayBinarySearchTree(4);
+			tree = new BinarySearchTree(true);
+			Random generator = new Random(25);
+			boolean same = true;
+			for (int i = 0; i < 20000; ++i) {
+				int px = generator.nextInt(60) - 30;
+				int py = generator.nextInt(60) - 30;
+				Location q = new Location(px, py);
+				int op = generator.nextInt(3);
+				boolean failed = false, failedCompact = false;
+				try {
+					if (op == 0)
+						tree.put(tree.getRoot(), new Pixel(q, i));
+					else if (op == 1)
+						tree.remove(tree.getRoot(), q);
+				} catch (Exception e) {
+					failed = true;
+				}
+				try {
+					if (op == 0)
+						compact.put(compact.getRoot(), px, py, i);
+					else if (op == 1)
+						compact.remove(compact.getRoot(), q);
+				} catch (Exception e) {
+					failedCompact = true;
+				}
+				if ((failed != failedCompact) || !samePixel(tree.get(tree.getRoot(), q), compact.get(compact.getRoot(), q))
+						|| !samePixel(tree.successor(tree.getRoot(), q), compact.successor(compact.getRoot(), q))
+						|| !samePixel(tree.predecessor(tree.getRoot(), q), compact.predecessor(compact.getRoot(), q))
+						|| (tree.getRoot().isLeaf() != compact.getRoot().isLeaf()))
+					same = false;
+			}
+			if (same && (compact.smallest(compact.getRoot()).getColor() == tree.smallest(tree.getRoot()).getColor()))
+				System.out.println("Test 25 passed");
+			else
+				System.out.println("Test 25 failed");
+		} catch (Exception e) {
+			System.out.println("Test 25 failed");
+		}
+
+		// Bulk-load trees from the pixels of an image scanned in key order
+		try {
+			im = ImageIO.read(new File("g.jpg"));
+			width = im.getWidth();
+			int height = im.getHeight();
+			long keys[] = new long[width * height];
+			int rgbs[] = new int[width * height];
+			n = 0;
+			for (int i = 0; i < width; ++i)
+				for (int j = 0; j < height; ++j) {
+					keys[n] = Location.key(i, j);
+					rgbs[n++] = im.getRGB(i, j);
+				}
+			tree = new BinarySearchTree(true);
+			tree.build(keys, rgbs, n);
+			BinarySearchTreeADT compact = new ArrayBinarySearchTree();
+			compact.build(keys, rgbs, n);
+			boolean same = true;
+			for (int i = 0; i < width; ++i)
+				for (int j = 0; j < height; ++j)
+					if ((tree.get(tree.getRoot(), i, j).getColor() != im.getRGB(i, j))
+							|| (compact.get(compact.getRoot(), i, j).getColor() != im.getRGB(i, j)))
+						same = false;
+			int levels = 32 - Integer.numberOfLeadingZeros(n);
+			tree.put(tree.getRoot(), new Pixel(new Location(-1, 0), 0));
+			compact.remove(compact.getRoot(), new Location(3, 25));
+			if (same && (tree.getRoot().getHeight() <= levels + 1) && (compact.get(compact.getRoot(), 3, 25) == null)
+					&& (tree.smallest(tree.getRoot()).getLocation().xCoord() == -1))
+				System.out.println("Test 26 passed");
+			else
+				System.out.println("Test 26 failed");
+		} catch (Exception e) {
+			System.out.println("Test 26 failed");
+		}
+
+		try {
+			long keys[] = { Location.key(1, 1), Location.key(1, 2), Location.key(1, 2) };
+			tree = new BinarySearchTree();
+			tree.build(keys, new int[3], 3); // Duplicated keys are rejected
+			System.out.println("Test 27 failed");
+		} catch (DuplicatedKeyException e) {
+			System.out.println("Test 27 passed");
+		} catch (Exception e) {
+			System.out.println("Test 27 failed");
+		}
+
+		// Walk the pixels in order with cursors and iterators
+		try {
+			Random generator = new Random(28);
+			tree = new BinarySearchTree(true);
+			BinarySearchTreeADT compact = new ArrayBinarySearchTree();
+			for (int i = 0; i < 5000; ++i) {
+				int px = generator.nextInt(200), py = generator.nextInt(200);
+				if (tree.get(tree.getRoot(), px, py) == null) {
+					tree.put(tree.getRoot(), px, py, i);
+					compact.put(compact.getRoot(), px, py, i);
+				}
+			}
+			for (int i = 0; i < 1000; ++i) {
+				Location q = new Location(generator.nextInt(200), generator.nextInt(200));
+				if (tree.get(tree.getRoot(), q) != null) {
+					tree.remove(tree.getRoot(), q);
+					compact.remove(compact.getRoot(), q);
+				}
+			}
+			boolean ordered = true;
+			int count = 0;
+			PixelCursor walk = tree.cursor();
+			PixelCursor compactWalk = compact.cursor();
+			Pixel expected = tree.smallest(tree.getRoot());
+			for (Pixel pix : compact) {
+				long key = walk.nextKey();
+				if ((expected == null) || (key != expected.getLocation().key()) || (walk.color() != expected.getColor())
+						|| (compactWalk.nextKey() != key) || (compactWalk.color() != pix.getColor())
+						|| (pix.getLocation().key() != key))
+					ordered = false;
+				expected = tree.successor(tree.getRoot(), expected.getLocation());
+				++count;
+			}
+			if (ordered && (expected == null) && !walk.hasNext() && !compactWalk.hasNext()
+					&& (count == ((ArrayBinarySearchTree) compact).size()))
+				System.out.println("Test 28 passed");
+			else
+				System.out.println("Test 28 failed");
+		} catch (Exception e) {
+			System.out.println("Test 28 failed");
+		}
+
+		// Range cursors visit exactly the pixels inside a rectangle, in order
+		try {
+			Random generator = new Random(29);
+			BinarySearchTreeADT compact = new ArrayBinarySearchTree();
+			compact.build(new long[0], new int[0], 0);
+			for (Pixel pix : tree)
+				compact.put(compact.getRoot(), pix);
+			boolean inside = true;
+			for (int i = 0; i < 200; ++i) {
+				int xMin = generator.nextInt(220) - 10, yMin = generator.nextInt(220) - 10;
+				int xMax = xMin + generator.nextInt(60), yMax = yMin + generator.nextInt(60);
+				int expected = 0;
+				for (Pixel pix : tree) {
+					Location q = pix.getLocation();
+					if ((q.xCoord() >= xMin) && (q.xCoord() <= xMax) && (q.yCoord() >= yMin) && (q.yCoord() <= yMax))
+						++expected;
+				}
+				PixelCursor[] walks = { tree.range(xMin, yMin, xMax, yMax), compact.range(xMin, yMin, xMax, yMax) };
+				for (PixelCursor walk : walks) {
+					int count = 0;
+					long previous = Long.MIN_VALUE;
+					while (walk.hasNext()) {
+						long key = walk.nextKey();
+						int kx = Location.keyX(key), ky = Location.keyY(key);
+						if ((key <= previous) || (kx < xMin) || (kx > xMax) || (ky < yMin) || (ky > yMax)
+								|| (tree.get(tree.getRoot(), kx, ky).getColor() != walk.color()))
+							inside = false;
+						previous = key;
+						++count;
+					}
+					if (count != expected)
+						inside = false;
+				}
+			}
+			if (inside && !tree.range(5, 5, 4, 5).hasNext())
+				System.out.println("Test 29 passed");
+			else
+				System.out.println("Test 29 failed");
+		} catch (Exception e) {
+			System.out.println("Test 29 failed");
+		}
+
+		// A node may be created without a pixel, as before keys were cached
+		try {
+			BinaryNode empty = new BinaryNode(null, null, null, null);
+			BinaryNode full = new BinaryNode(new Pixel(new Location(3, 4), 1), null, null, null);
+			if ((empty.getData() == null) && (empty.getKey() == 0) && (full.getKey() == Location.key(3, 4)))
+				System.out.println("Test 30 passed");
+			else
+				System.out.println("Test 30 failed");
+		} catch (Exception e) {
+			System.out.println("Test 30 failed");
+		}
+
+	}
+
+	/* =================================================================== */
+	private static boolean samePixel(Pixel a, Pixel b) {
+		/* =================================================================== */
+		/* Check that two pixels are both null or have the same key and color */
+		if ((a == null) || (b == null))
+			return a == b;
+		return (a.getLocation().compareTo(b.getLocation()) == 0) && (a.getColor() == b.getColor());
+	}
+
+	/* =================================================================== */
+	private static int countNodes(BinaryNode r, IdentityHashMap<BinaryNode, Boolean> seen) {
+		/* =================================================================== */
+		/* Count the distinct node objects reachable from r */
+		if (seen.put(r, Boolean.TRUE) != null)
+			return 0;
+		if (r.isLeaf())
+			return 1;
+		return 1 + countNodes(r.getLeft(), seen) + countNodes(r.getRight(), seen);
 	}
 
 	/* =================================================================== */
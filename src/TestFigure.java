@@ -0,0 +1,704 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+public class TestFigure {
+
+	private static final int THRESHOLD = 225; // transparent pixels have RGB values >= threshold
+
+	private static String[] files = { "p.jpg", "g.jpg", "vs2.jpg", "s2.jpg", "ship.jpg", "b.jpg" };
+	private static GraphicalFigure[] figs = new GraphicalFigure[files.length];
+	private static GraphicalFigure[] runFigs = new GraphicalFigure[files.length];
+	private static boolean[][][] opaque = new boolean[files.length][][];
+
+	public static void main(String[] args) {
+
+		try {
+			for (int i = 0; i < files.length; ++i)
+				loadFigure(i, files[i]);
+		} catch (IOException e) {
+			System.out.println("Error opening file. " + e.getMessage());
+			System.out.println("Tests aborted");
+			return;
+		} catch (DuplicatedKeyException e) {
+			System.out.println("Tests aborted");
+			return;
+		}
+
+		// The mask of a figure has exactly the pixels of the figure
+		try {
+			boolean same = true;
+			for (int i = 0; i < files.length; ++i) {
+				PixelMask mask = figs[i].getMask();
+				for (int x = -1; x <= opaque[i].length; ++x)
+					for (int y = -1; y <= opaque[i][0].length; ++y)
+						if (mask.contains(x, y) != isOpaque(i, x, y))
+							same = false;
+			}
+			if (same)
+				System.out.println("Test 1 passed");
+			else
+				System.out.println("Test 1 failed");
+		} catch (Exception e) {
+			System.out.println("Test 1 failed");
+		}
+
+		// Figures intersect exactly when some of their pixels overlap
+		try {
+			if (sameAsPixelTest(figs, figs, 5))
+				System.out.println("Test 2 passed");
+			else
+				System.out.println("Test 2 failed");
+		} catch (Exception e) {
+			System.out.println("Test 2 failed");
+		}
+
+		// Figures with no pixels, or with pixels at negative coordinates
+		try {
+			GraphicalFigure empty = new GraphicalFigure(100, 10, 10, "fixed", new Location(0, 0));
+			GraphicalFigure shifted = new GraphicalFigure(101, 100, 10, "fixed", new Location(0, 0));
+			shifted.addPixel(new Pixel(new Location(-3, -2), 1));
+			shifted.addPixel(new Pixel(new Location(70, 4), 1));
+			GraphicalFigure dot = new GraphicalFigure(102, 100, 100, "fixed", new Location(67, 2));
+			dot.addPixel(new Pixel(new Location(3, 2), 1));
+			boolean hit = shifted.intersects(dot) && dot.intersects(shifted);
+			dot.setOffset(new Location(66, 2));
+			boolean miss = !shifted.intersects(dot) && !dot.intersects(shifted);
+			if (!empty.intersects(figs[0]) && !figs[0].intersects(empty) && hit && miss)
+				System.out.println("Test 3 passed");
+			else
+				System.out.println("Test 3 failed");
+		} catch (Exception e) {
+			System.out.println("Test 3 failed");
+		}
+
+		// Large figures, tested through the coarse levels of their masks
+		try {
+			GraphicalFigure[] large = { shape(200, 300, 300, 0, "tree"), shape(201, 200, 200, 1, "tree"),
+					shape(202, 260, 240, 2, "tree") };
+			boolean same = true;
+			for (int i = 0; i < large.length; ++i)
+				for (int j = 0; j < large.length; ++j) {
+					if (i == j)
+						continue;
+					PixelMask a = large[i].getMask(), b = large[j].getMask();
+					large[i].setOffset(new Location(500, 500));
+					for (int dx = -290; dx <= 290; dx += 11)
+						for (int dy = -290; dy <= 290; dy += 7) {
+							large[j].setOffset(new Location(500 + dx, 500 + dy));
+							boolean expected = false;
+							for (int x = 0; (x < 300) && !expected; ++x)
+								for (int y = 0; (y < 300) && !expected; ++y)
+									expected = a.contains(x, y) && b.contains(x - dx, y - dy);
+							if (large[i].intersects(large[j]) != expected)
+								same = false;
+						}
+				}
+			if (same)
+				System.out.println("Test 4 passed");
+			else
+				System.out.println("Test 4 failed");
+		} catch (Exception e) {
+			System.out.println("Test 4 failed");
+		}
+
+		// Figures stored as runs, tested against each other and against trees
+		try {
+			boolean same = true;
+			for (int i = 0; i < files.length; ++i) {
+				PixelMask mask = runFigs[i].getMask();
+				for (int x = -1; x <= opaque[i].length; ++x)
+					for (int y = -1; y <= opaque[i][0].length; ++y)
+						if (mask.contains(x, y) != isOpaque(i, x, y))
+							same = false;
+			}
+			if (same && sameAsPixelTest(runFigs, runFigs, 5) && sameAsPixelTest(runFigs, figs, 7))
+				System.out.println("Test 5 passed");
+			else
+				System.out.println("Test 5 failed");
+		} catch (Exception e) {
+			System.out.println("Test 5 failed");
+		}
+
+		// Choosing between runs and the tree, and adding pixels to runs
+		try {
+			GraphicalFigure solid = shape(300, 120, 120, 1, "auto");
+			GraphicalFigure apart = new GraphicalFigure(301, 1000, 1, "fixed", new Location(0, 0));
+			long[] keys = { Location.key(0, 0), Location.key(999, 0) };
+			apart.setPixels(keys, new int[] { 1, 1 }, 2);
+			boolean chosen = solid.hasRuns() && !apart.hasRuns();
+			apart.setShape("runs");
+			apart.setPixels(keys, new int[] { 1, 1 }, 2);
+			boolean forced = apart.hasRuns() && !shape(302, 120, 120, 1, "tree").hasRuns();
+			solid.addPixel(new Pixel(new Location(0, 0), 1));
+			boolean moved = !solid.hasRuns() && solid.getMask().contains(0, 0) && solid.getMask().contains(60, 60);
+			if (chosen && forced && moved)
+				System.out.println("Test 6 passed");
+			else
+				System.out.println("Test 6 failed");
+		} catch (Exception e) {
+			System.out.println("Test 6 failed");
+		}
+
+		// Figures sharing the same runs
+		try {
+			// Top and bottom edges of a 20x20 square
+			long[] keys = new long[40];
+			for (int x = 0; x < 20; ++x) {
+				keys[2 * x] = Location.key(x, 0);
+				keys[2 * x + 1] = Location.key(x, 19);
+			}
+			PixelRuns runs = new PixelRuns(keys, new int[40], 40);
+			GraphicalFigure first = new GraphicalFigure(400, 20, 20, "fixed", new Location(0, 0));
+			GraphicalFigure second = new GraphicalFigure(401, 20, 20, "computer", new Location(10, 0));
+			first.setRuns(runs);
+			second.setRuns(runs);
+			boolean shared = (first.getMask() == second.getMask()) && first.intersects(second);
+			second.setOffset(new Location(10, 5));
+			boolean apart = !first.intersects(second);
+			second.addPixel(new Pixel(new Location(0, 14), 1));
+			boolean own = second.intersects(first) && (first.getMask() == runs.getMask()) && !runs.contains(0, 14);
+			if (shared && apart && own)
+				System.out.println("Test 7 passed");
+			else
+				System.out.println("Test 7 failed");
+		} catch (Exception e) {
+			System.out.println("Test 7 failed");
+		}
+
+		// Cached pixel tests give the same results as uncached ones
+		try {
+			CollisionCache small = new CollisionCache(8), large = new CollisionCache(1 << 16);
+			java.util.Random random = new java.util.Random(7);
+			boolean same = true;
+			long lookups = 0;
+			for (int k = 0; k < 20000; ++k) {
+				int i = random.nextInt(files.length), j = random.nextInt(files.length);
+				if (i == j)
+					continue;
+				figs[i].setOffset(new Location(200, 200));
+				figs[j].setOffset(new Location(200 + random.nextInt(21) * 4 - 40, 200 + random.nextInt(21) * 4 - 40));
+				boolean expected = figs[i].intersects(figs[j]);
+				if ((figs[i].intersects(figs[j], small) != expected) || (figs[i].intersects(figs[j], large) != expected))
+					same = false;
+				++lookups;
+			}
+			// The test is symmetric, so the reversed pair is found in the cache
+			CollisionCache fresh = new CollisionCache(16);
+			figs[0].setOffset(new Location(200, 200));
+			figs[1].setOffset(new Location(197, 213));
+			figs[0].intersects(figs[1], fresh);
+			figs[1].intersects(figs[0], fresh);
+			boolean reversed = (fresh.getMisses() == 1) && (fresh.getHits() == 1);
+			if (same && reversed && (small.getHits() + small.getMisses() <= lookups) && (small.getEvictions() > 0)
+					&& (large.getHits() > large.getMisses()) && (large.getEvictions() == 0))
+				System.out.println("Test 8 passed");
+			else
+				System.out.println("Test 8 failed");
+		} catch (Exception e) {
+			System.out.println("Test 8 failed");
+		}
+
+		// Pairs skipped by the separation tracker are never pairs that intersect
+		try {
+			SeparationTracker tracker = new SeparationTracker();
+			java.util.Random random = new java.util.Random(11);
+			for (int i = 0; i < files.length; ++i)
+				figs[i].setOffset(new Location(random.nextInt(400), random.nextInt(400)));
+			boolean same = true;
+			for (int k = 0; k < 20000; ++k) {
+				int i = random.nextInt(files.length);
+				Location pos = figs[i].getOffset();
+				if (random.nextInt(100) == 0)
+					figs[i].setOffset(new Location(random.nextInt(400), random.nextInt(400)));
+				else if (random.nextBoolean())
+					figs[i].setOffset(new Location(pos.xCoord() + random.nextInt(9) - 4, pos.yCoord()));
+				else
+					figs[i].setOffset(new Location(pos.xCoord(), pos.yCoord() + random.nextInt(9) - 4));
+				for (int j = 0; j < files.length; ++j)
+					if ((j != i) && (tracker.intersects(figs[i], figs[j], null) != figs[i].intersects(figs[j])))
+						same = false;
+			}
+			if (same && (tracker.getSkips() > tracker.getTests()))
+				System.out.println("Test 9 passed");
+			else
+				System.out.println("Test 9 failed");
+		} catch (Exception e) {
+			System.out.println("Test 9 failed");
+		}
+
+		// Every broadphase finds every figure whose rectangle meets the moved one
+		try {
+			BroadphaseADT[] phases = { new SpatialHash(32, 16), new SweepAndPrune(), new BruteForce(),
+					new BoundingVolumes() };
+			boolean found = true;
+			for (BroadphaseADT phase : phases) {
+				java.util.Random random = new java.util.Random(13);
+				for (int i = 0; i < files.length; ++i) {
+					figs[i].setType((i % 2 == 0) ? "fixed" : "computer");
+					figs[i].setOffset(new Location(random.nextInt(400) - 50, random.nextInt(400) - 50));
+					phase.update(figs, i);
+				}
+				int[] result = new int[files.length];
+				for (int k = 0; k < 5000; ++k) {
+					int i = random.nextInt(files.length);
+					Location pos = figs[i].getOffset();
+					figs[i].setOffset(new Location(pos.xCoord() + random.nextInt(41) - 20, pos.yCoord() + random.nextInt(41) - 20));
+					if (random.nextInt(4) == 0) {
+						// Place it just touching the rectangle of another figure
+						GraphicalFigure other = figs[random.nextInt(files.length)];
+						figs[i].setOffset(new Location(other.getOffset().xCoord() + other.getWidth(),
+								other.getOffset().yCoord() + other.getHeight()));
+					}
+					if (random.nextInt(500) == 0) {
+						figs[i].setType("killed");
+						figs[i].setOffset(new Location(-1000, -1000));
+					} else if (figs[i].getType().equals("killed") && (random.nextInt(50) == 0)) {
+						figs[i].setType((i % 2 == 0) ? "fixed" : "computer");
+					}
+					// Sometimes look along a move from the new offset and move back, as a blocked mover does
+					if ((random.nextInt(3) == 0) && !figs[i].getType().equals("killed")) {
+						found &= findsNeighbours(phase, i, random.nextInt(17) - 8, random.nextInt(17) - 8, result);
+						figs[i].setOffset(pos);
+					}
+					phase.update(figs, i);
+					found &= findsNeighbours(phase, random.nextInt(files.length), 0, 0, result);
+				}
+			}
+			if (found && (phases[1].getCandidates() < phases[2].getCandidates()))
+				System.out.println("Test 10 passed");
+			else
+				System.out.println("Test 10 failed");
+		} catch (Exception e) {
+			System.out.println("Test 10 failed");
+		}
+
+		// A mask of several figures meets a mover exactly when one of them does
+		try {
+			java.util.Random random = new java.util.Random(17);
+			int walls = 3;
+			PixelMask[] masks = new PixelMask[walls];
+			int[] xs = new int[walls], ys = new int[walls];
+			for (int i = 0; i < walls; ++i) {
+				figs[i].setOffset(new Location(random.nextInt(300) - 20, random.nextInt(300) - 20));
+				masks[i] = figs[i].getMask();
+				xs[i] = figs[i].getOffset().xCoord();
+				ys[i] = figs[i].getOffset().yCoord();
+			}
+			PixelMask world = new PixelMask(masks, xs, ys, walls);
+			boolean same = true;
+			for (int k = 0; k < 5000; ++k) {
+				GraphicalFigure mover = runFigs[walls + random.nextInt(files.length - walls)];
+				mover.setOffset(new Location(random.nextInt(400) - 100, random.nextInt(400) - 100));
+				boolean expected = false;
+				for (int i = 0; i < walls; ++i)
+					expected |= figs[i].intersects(mover);
+				if (world.intersects(mover.getMask(), mover.getOffset().xCoord(), mover.getOffset().yCoord()) != expected)
+					same = false;
+			}
+			if (same && (new PixelMask(masks, xs, ys, 0).getWidth() == 0))
+				System.out.println("Test 11 passed");
+			else
+				System.out.println("Test 11 failed");
+		} catch (Exception e) {
+			System.out.println("Test 11 failed");
+		}
+
+		// A tree of clustered rectangles stays shallow and finds the ones that meet
+		try {
+			RectangleTree tree = new RectangleTree();
+			int count = 2000;
+			int[][] boxes = new int[count][];
+			int[] leaves = new int[count];
+			for (int i = 0; i < count; ++i) {
+				// Rows of small rectangles, inserted in order, the worst case for a plain tree
+				boxes[i] = new int[] { (i % 100) * 12, (i / 100) * 12, (i % 100) * 12 + 10, (i / 100) * 12 + 10 };
+				leaves[i] = tree.insert(i, boxes[i][0], boxes[i][1], boxes[i][2], boxes[i][3]);
+			}
+			for (int i = 0; i < count; i += 3) {
+				tree.remove(leaves[i]);
+				boxes[i] = null;
+			}
+			boolean shallow = (tree.getHeight() <= 2 * 11) && (tree.size() == count - (count + 2) / 3);
+			java.util.Random random = new java.util.Random(19);
+			int[] result = new int[count];
+			boolean same = true;
+			for (int k = 0; k < 500; ++k) {
+				int x = random.nextInt(1300) - 50, y = random.nextInt(300) - 50, w = random.nextInt(40);
+				int n = tree.query(x, y, x + w, y + w, result, 0);
+				java.util.Arrays.sort(result, 0, n);
+				int expected = 0;
+				for (int i = 0; i < count; ++i)
+					if ((boxes[i] != null) && (boxes[i][0] <= x + w) && (x <= boxes[i][2]) && (boxes[i][1] <= y + w)
+							&& (y <= boxes[i][3])) {
+						if ((expected >= n) || (result[expected] != i))
+							same = false;
+						++expected;
+					}
+				if (expected != n)
+					same = false;
+			}
+			if (shallow && same)
+				System.out.println("Test 12 passed");
+			else
+				System.out.println("Test 12 failed");
+		} catch (Exception e) {
+			System.out.println("Test 12 failed");
+		}
+
+		// A batch of moves gives the same figures and results as the moves made one by one
+		try {
+			int count = 60, walls = 20, ticks = 200;
+			int[][] xs = new int[3][], ys = new int[3][], codes = new int[3][];
+			boolean same = true;
+			for (int run = 0; run < 3; ++run) {
+				java.util.Random random = new java.util.Random(23);
+				GraphicalFigure[] shapes = new GraphicalFigure[count];
+				for (int i = 0; i < count; ++i) {
+					shapes[i] = shape(i, 10 + random.nextInt(30), 10 + random.nextInt(30), random.nextInt(2), "runs");
+					shapes[i].setType((i < walls) ? "fixed" : "computer");
+					boolean free;
+					do {
+						shapes[i].setOffset(random.nextInt(360), random.nextInt(360));
+						free = true;
+						for (int j = 0; j < i; ++j)
+							free &= !shapes[i].intersects(shapes[j]);
+					} while (!free);
+				}
+				MoveFigure mover = new World(400, 400, shapes, count, new SpatialHash(32, 64)).getMover();
+				mover.setThreads((run == 2) ? 4 : 1);
+				int[] movers = new int[count - walls], dx = new int[count - walls], dy = new int[count - walls];
+				xs[run] = new int[ticks * count];
+				ys[run] = new int[ticks * count];
+				codes[run] = new int[ticks * count];
+				for (int t = 0; t < ticks; ++t) {
+					for (int k = 0; k < movers.length; ++k) {
+						movers[k] = walls + k;
+						dx[k] = random.nextInt(17) - 8;
+						dy[k] = random.nextInt(17) - 8;
+					}
+					int[] result = new int[movers.length];
+					if (run == 0)
+						for (int k = 0; k < movers.length; ++k)
+							result[k] = mover.move(shapes, count, movers[k], dx[k], dy[k]);
+					else
+						mover.moveAll(shapes, count, movers, movers.length, dx, dy, result);
+					for (int i = 0; i < count; ++i) {
+						xs[run][t * count + i] = shapes[i].getX();
+						ys[run][t * count + i] = shapes[i].getY();
+						codes[run][t * count + i] = (i < walls) ? 0 : result[i - walls];
+					}
+				}
+				mover.setThreads(1);
+				for (int i = walls; i < count; ++i)
+					for (int j = 0; j < count; ++j)
+						if ((i != j) && shapes[i].intersects(shapes[j]))
+							same = false;
+			}
+			for (int run = 1; run < 3; ++run)
+				same &= java.util.Arrays.equals(xs[run], xs[0]) && java.util.Arrays.equals(ys[run], ys[0])
+						&& java.util.Arrays.equals(codes[run], codes[0]);
+			if (same)
+				System.out.println("Test 13 passed");
+			else
+				System.out.println("Test 13 failed");
+		} catch (Exception e) {
+			System.out.println("Test 13 failed");
+		}
+
+		// The game loop plays ticks at its rate, stops at once when paused and
+		// skips the ticks it cannot catch up with
+		try {
+			GraphicalFigure[] shapes = new GraphicalFigure[2];
+			shapes[0] = shape(0, 20, 20, 1, "runs");
+			shapes[1] = shape(1, 20, 20, 1, "runs");
+			shapes[1].setType("computer");
+			shapes[1].setOffset(100, 100);
+			Simulation game = new Simulation(new World(400, 400, shapes, 2), new java.util.Random(5));
+			final long[] slow = { 0 };
+			GameLoop loop = new GameLoop(game, new FrameListener() {
+				public void frame(double alpha) {
+					try {
+						if ((alpha < 0) || (alpha > 1))
+							slow[0] = -1000000;
+						else if (slow[0] > 0)
+							Thread.sleep(slow[0]);
+						slow[0] = Math.min(slow[0], 0);
+					} catch (InterruptedException e) {
+					}
+				}
+			}, 20);
+			boolean right = (game.getTicks() == 0) && (loop.getTickPeriod() == 20);
+			loop.start();
+			Thread.sleep(400);
+			loop.pause();
+			long played = game.getTicks();
+			right &= (played >= 5) && (played <= 25);
+			Thread.sleep(200);
+			right &= (game.getTicks() == played) && (loop.getSkipped() == 0);
+			slow[0] = 400;
+			loop.start();
+			Thread.sleep(600);
+			loop.shutdown();
+			right &= (game.getTicks() > played) && (game.getTicks() < played + 30) && (loop.getSkipped() > 0)
+					&& (slow[0] == 0);
+			if (right)
+				System.out.println("Test 14 passed");
+			else
+				System.out.println("Test 14 failed");
+		} catch (Exception e) {
+			System.out.println("Test 14 failed");
+		}
+
+		// Moves added by several threads are all drained once, in order, with
+		// consecutive moves in the same direction coalesced
+		try {
+			final InputQueue queue = new InputQueue();
+			int[] moves = { 3, 0, 3, 0, 0, -3, -3, 0, -3, 0, 3, 0 };
+			for (int k = 0; k < moves.length; k += 2)
+				queue.add(moves[k], moves[k + 1]);
+			boolean right = (queue.drain() == 4) && (queue.getDx(0) == 6) && (queue.getDy(1) == -3)
+					&& (queue.getDx(2) == -6) && (queue.getDx(3) == 3) && (queue.drain() == 0);
+			Thread[] producers = new Thread[4];
+			for (int t = 0; t < producers.length; ++t) {
+				producers[t] = new Thread() {
+					public void run() {
+						for (int k = 0; k < 5000; ++k)
+							queue.add(1, 2);
+					}
+				};
+				producers[t].start();
+			}
+			long sumX = 0, sumY = 0;
+			boolean alive = true;
+			while (alive) {
+				alive = false;
+				for (int t = 0; t < producers.length; ++t)
+					alive |= producers[t].isAlive();
+				int n = queue.drain();
+				right &= (n <= 1);
+				for (int k = 0; k < n; ++k) {
+					sumX += queue.getDx(k);
+					sumY += queue.getDy(k);
+				}
+			}
+			right &= (queue.drain() == 0) && (sumX == 20000) && (sumY == 40000);
+			if (right)
+				System.out.println("Test 15 passed");
+			else
+				System.out.println("Test 15 failed");
+		} catch (Exception e) {
+			System.out.println("Test 15 failed");
+		}
+
+		// Separations of thousands of figures take memory for the pairs tested
+		// only, and a full tracker that is emptied still gives the right results
+		try {
+			int count = 5000;
+			java.util.Random random = new java.util.Random(17);
+			GraphicalFigure[] shapes = new GraphicalFigure[count];
+			for (int i = 0; i < count; ++i) {
+				shapes[i] = shape(i, 8, 8, 1, "runs");
+				shapes[i].setOffset(random.nextInt(2000), random.nextInt(2000));
+			}
+			SeparationTracker large = new SeparationTracker(), small = new SeparationTracker(256);
+			boolean same = true;
+			for (int k = 0; k < 200000; ++k) {
+				int i = random.nextInt(count), j = (i + 1 + random.nextInt(40)) % count;
+				shapes[i].setOffset(shapes[i].getX() + random.nextInt(5) - 2, shapes[i].getY() + random.nextInt(5) - 2);
+				boolean hit = shapes[i].intersects(shapes[j]);
+				same &= (large.intersects(shapes[i], shapes[j], null) == hit)
+						&& (small.intersects(shapes[j], shapes[i], null) == hit);
+			}
+			if (same && (large.getSkips() > 0) && (small.getSkips() > 0) && (large.getSlots() <= 1 << 19)
+					&& (small.getSlots() == 2 * small.getCapacity()))
+				System.out.println("Test 16 passed");
+			else
+				System.out.println("Test 16 failed");
+		} catch (Exception e) {
+			System.out.println("Test 16 failed");
+		}
+
+		// A move stops where walking one pixel at a time would stop, against a
+		// figure met at that pixel
+		try {
+			int count = 40;
+			java.util.Random random = new java.util.Random(31);
+			GraphicalFigure[] shapes = new GraphicalFigure[count];
+			for (int i = 0; i < count; ++i) {
+				shapes[i] = shape(i, 8 + random.nextInt(30), 8 + random.nextInt(30), random.nextInt(3), "runs");
+				shapes[i].setType((i < 15) ? "fixed" : "computer");
+				boolean free;
+				do {
+					shapes[i].setOffset(random.nextInt(260), random.nextInt(260));
+					free = true;
+					for (int j = 0; j < i; ++j)
+						free &= !shapes[i].intersects(shapes[j]);
+				} while (!free);
+			}
+			MoveFigure mover = new World(300, 300, shapes, count, new SpatialHash(32, 64)).getMover();
+			boolean same = true;
+			for (int k = 0; k < 3000; ++k) {
+				int i = 15 + random.nextInt(count - 15), length = 1 + random.nextInt(40), dx, dy;
+				int kind = random.nextInt(3);
+				dx = (kind == 2) ? random.nextInt(2 * length + 1) - length : (random.nextBoolean() ? length : -length);
+				dy = (kind == 0) ? 0 : (kind == 1) ? (random.nextBoolean() ? dx : -dx) : random.nextInt(2 * length + 1) - length;
+				if ((kind == 0) && random.nextBoolean()) {
+					dy = dx;
+					dx = 0;
+				}
+				int x = shapes[i].getX(), y = shapes[i].getY(), steps = Math.max(Math.abs(dx), Math.abs(dy));
+				int expected = -2, moved = 0;
+				boolean[] hit = new boolean[count];
+				for (int t = 1; (t <= steps) && (expected == -2); ++t) {
+					int newx = x + dx * t / steps, newy = y + dy * t / steps;
+					if ((newx < 0) || (newy < 0) || (newx > 300 - shapes[i].getWidth())
+							|| (newy > 300 - shapes[i].getHeight())) {
+						expected = -1;
+						break;
+					}
+					shapes[i].setOffset(newx, newy);
+					for (int j = 0; j < count; ++j)
+						if ((j != i) && shapes[i].intersects(shapes[j])) {
+							hit[j] = true;
+							expected = j;
+						}
+					if (expected == -2)
+						moved = t;
+				}
+				shapes[i].setOffset(x, y);
+				int code = mover.move(shapes, count, i, dx, dy);
+				same &= (shapes[i].getX() == x + ((steps == 0) ? 0 : dx * moved / steps))
+						&& (shapes[i].getY() == y + ((steps == 0) ? 0 : dy * moved / steps))
+						&& ((expected < 0) ? (code == expected) : ((code >= 0) && hit[code]));
+			}
+			if (same)
+				System.out.println("Test 17 passed");
+			else
+				System.out.println("Test 17 failed");
+		} catch (Exception e) {
+			System.out.println("Test 17 failed");
+		}
+	}
+
+	/* =================================================================== */
+	private static GraphicalFigure shape(int id, int width, int height, int kind, String storage)
+			throws DuplicatedKeyException {
+		/* =================================================================== */
+		/*
+		 * Build a figure that is a thin ring (kind 0), a solid disc (kind 1) or a
+		 * sparse grid of dots (kind 2), with its pixels stored as given
+		 */
+		GraphicalFigure fig = new GraphicalFigure(id, width, height, "fixed", new Location(0, 0));
+		long[] keys = new long[width * height];
+		int[] colors = new int[width * height];
+		int n = 0;
+		double cx = width / 2.0, cy = height / 2.0, radius = Math.min(cx, cy);
+		for (int x = 0; x < width; ++x)
+			for (int y = 0; y < height; ++y) {
+				double d = Math.hypot(x - cx, y - cy);
+				if (((kind == 0) && (d < radius) && (d > radius - 5)) || ((kind == 1) && (d < radius))
+						|| ((kind == 2) && (x % 31 < 2) && (y % 29 < 2))) {
+					keys[n] = Location.key(x, y);
+					colors[n++] = 1;
+				}
+			}
+		fig.setShape(storage);
+		fig.setPixels(keys, colors, n);
+		return fig;
+	}
+
+	/* =================================================================== */
+	private static boolean findsNeighbours(BroadphaseADT phase, int j, int dx, int dy, int[] result) {
+		/* =================================================================== */
+		/*
+		 * Check that the candidates of figure j moving by (dx, dy) are sorted, do
+		 * not include j and include every live figure whose rectangle meets the
+		 * one swept by j, the edges included
+		 */
+		int n = phase.candidates(figs, j, dx, dy, result);
+		for (int c = 1; c < n; ++c)
+			if (result[c - 1] >= result[c])
+				return false;
+		for (int other = 0; other < files.length; ++other) {
+			boolean candidate = java.util.Arrays.binarySearch(result, 0, n, other) >= 0;
+			Location a = figs[j].getOffset(), b = figs[other].getOffset();
+			boolean meets = (a.xCoord() + Math.min(dx, 0) <= b.xCoord() + figs[other].getWidth())
+					&& (b.xCoord() <= a.xCoord() + figs[j].getWidth() + Math.max(dx, 0))
+					&& (a.yCoord() + Math.min(dy, 0) <= b.yCoord() + figs[other].getHeight())
+					&& (b.yCoord() <= a.yCoord() + figs[j].getHeight() + Math.max(dy, 0));
+			boolean alive = !figs[other].getType().equals("killed") && !figs[j].getType().equals("killed");
+			if ((other == j) ? candidate : (alive && meets && !candidate))
+				return false;
+		}
+		return true;
+	}
+
+	/* =================================================================== */
+	private static boolean sameAsPixelTest(GraphicalFigure[] first, GraphicalFigure[] second, int stride) {
+		/* =================================================================== */
+		/*
+		 * Compare intersects with a pixel by pixel test for every pair of figures and
+		 * relative offsets
+		 */
+		for (int i = 0; i < files.length; ++i)
+			for (int j = 0; j < files.length; ++j) {
+				if (i == j)
+					continue;
+				first[i].setOffset(new Location(200, 200));
+				for (int dx = -130; dx <= 130; dx += stride)
+					for (int dy = -130; dy <= 130; dy += stride) {
+						second[j].setOffset(new Location(200 + dx, 200 + dy));
+						if (first[i].intersects(second[j]) != overlaps(i, j, dx, dy))
+							return false;
+					}
+			}
+		return true;
+	}
+
+	/* =================================================================== */
+	private static boolean overlaps(int i, int j, int dx, int dy) {
+		/* =================================================================== */
+		/* Pixel by pixel test of figure j placed at (dx, dy) relative to figure i */
+		for (int x = 0; x < opaque[i].length; ++x)
+			for (int y = 0; y < opaque[i][0].length; ++y)
+				if (opaque[i][x][y] && isOpaque(j, x - dx, y - dy))
+					return true;
+		return false;
+	}
+
+	/* =================================================================== */
+	private static boolean isOpaque(int i, int x, int y) {
+		/* =================================================================== */
+		return (x >= 0) && (y >= 0) && (x < opaque[i].length) && (y < opaque[i][0].length) && opaque[i][x][y];
+	}
+
+	/* =================================================================== */
+	private static void loadFigure(int i, String name) throws IOException, DuplicatedKeyException {
+		/* =================================================================== */
+		/* Read the figure from the image file, dropping its transparent pixels */
+		BufferedImage im = ImageIO.read(new File(name));
+		int width = im.getWidth(), height = im.getHeight();
+		figs[i] = new GraphicalFigure(i, width, height, "fixed", new Location(0, 0));
+		runFigs[i] = new GraphicalFigure(i, width, height, "fixed", new Location(0, 0));
+		runFigs[i].setShape("runs");
+		long[] keys = new long[width * height];
+		int[] colors = new int[width * height];
+		int n = 0;
+		opaque[i] = new boolean[width][height];
+		for (int x = 0; x < width; ++x)
+			for (int y = 0; y < height; ++y) {
+				int rgb = im.getRGB(x, y);
+				if (((rgb & 0xff) < THRESHOLD) || (((rgb & 0xff00) >> 8) < THRESHOLD)
+						|| (((rgb & 0xff0000) >> 16) < THRESHOLD)) {
+					opaque[i][x][y] = true;
+					figs[i].addPixel(new Pixel(new Location(x, y), rgb));
+					keys[n] = Location.key(x, y);
+					colors[n++] = rgb;
+				}
+			}
+		runFigs[i].setPixels(keys, colors, n);
+	}
+}
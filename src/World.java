@@ -0,0 +1,237 @@
+/**
+ * Holds the figures of a game and the structures used to move them: the area
+ * where they move, the cache of pixel tests, the separations of the pairs of
+ * figures, the broadphase, the mask of the fixed figures and the mover. It
+ * has nothing to do with drawing, so the game can run without a window; a
+ * WorldListener, such as the Gui, can be told of every figure that moves or
+ * is destroyed.
+ * 
+ * @author Bazillah Zargar
+ */
+public class World {
+
+	private static final String FIXED = "fixed"; // type of figures that never move
+	private static final String FIGURE_KILLED = "killed"; // type of figures that were destroyed
+
+	private final int width; // width of the area where figures move
+	private final int height; // height of the area where figures move
+	private final GraphicalFigure[] figs; // figures of the game
+	private final int numFigures; // number of figures
+	private final CollisionCache collisions; // results of recent pixel tests, shared by all the moves
+	private final SeparationTracker separations; // pairs of figures known to be apart
+	private final BroadphaseADT broadphase; // finds the figures near a mover
+	private final PixelMask walls; // pixels of all the fixed figures, placed where they are
+	private final MoveFigure mover; // moves the figures
+	private WorldListener listener; // told of the figures that move or are destroyed, or null
+
+	/**
+	 * Constructor that creates a world with the given figures and the broadphase
+	 * chosen with -Dpacman.broadphase.
+	 * 
+	 * @param width      is the width of the area where figures move
+	 * @param height     is the height of the area where figures move
+	 * @param figs       is the array of figures
+	 * @param numFigures is the number of figures
+	 */
+	public World(int width, int height, GraphicalFigure[] figs, int numFigures) {
+		this(width, height, figs, numFigures, makeBroadphase(System.getProperty("pacman.broadphase", "grid")));
+	}
+
+	/**
+	 * Constructor that creates a world with the given figures and broadphase.
+	 * The cache of pixel tests has the size chosen with
+	 * -Dpacman.collisionCache.
+	 * 
+	 * @param width      is the width of the area where figures move
+	 * @param height     is the height of the area where figures move
+	 * @param figs       is the array of figures
+	 * @param numFigures is the number of figures
+	 * @param broadphase is the empty broadphase
+	 */
+	public World(int width, int height, GraphicalFigure[] figs, int numFigures, BroadphaseADT broadphase) {
+		this.width = width;
+		this.height = height;
+		this.figs = figs;
+		this.numFigures = numFigures;
+		this.collisions = new CollisionCache(Integer.getInteger("pacman.collisionCache", 16384));
+		this.separations = new SeparationTracker();
+		this.broadphase = broadphase;
+		for (int i = 0; i < numFigures; ++i)
+			broadphase.update(figs, i);
+		this.walls = buildWalls();
+		this.mover = new MoveFigure(this);
+	}
+
+	/**
+	 * Creates the broadphase with the given name: "grid" for a grid of cells,
+	 * whose size is chosen with -Dpacman.cellSize, "sap" for sorted lists of the
+	 * ends of the rectangles, "tree" for trees of rectangles, or "all" for all
+	 * the figures. Other names give the grid.
+	 * 
+	 * @param name is the name of the broadphase
+	 * @return the new broadphase
+	 */
+	public static BroadphaseADT makeBroadphase(String name) {
+		if (name.equals("sap"))
+			return new SweepAndPrune();
+		else if (name.equals("tree"))
+			return new BoundingVolumes();
+		else if (name.equals("all"))
+			return new BruteForce();
+		return new SpatialHash(Integer.getInteger("pacman.cellSize", 64), 1024);
+	}
+
+	/**
+	 * Chooses the listener told of the figures that move or are destroyed.
+	 * 
+	 * @param listener is the listener, or null for none
+	 */
+	public void setListener(WorldListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Tells the listener that figure fig moved from (fromX, fromY) to its current
+	 * offset.
+	 * 
+	 * @param fig   is the figure that moved
+	 * @param fromX is the x coordinate of its previous offset
+	 * @param fromY is the y coordinate of its previous offset
+	 */
+	public void moved(GraphicalFigure fig, int fromX, int fromY) {
+		if (this.listener != null) {
+			this.listener.figureMoved(fig, fromX, fromY);
+		}
+	}
+
+	/**
+	 * Destroys figure figs[fignum]: the listener is told, then the figure is
+	 * taken out of the broadphase and no longer meets any other.
+	 * 
+	 * @param fignum is the index of the figure
+	 */
+	public void kill(int fignum) {
+		if (this.listener != null) {
+			this.listener.figureKilled(this.figs[fignum]);
+		}
+		this.figs[fignum].setType(FIGURE_KILLED);
+		this.figs[fignum].setOffset(-1000, -1000);
+		this.broadphase.update(this.figs, fignum);
+	}
+
+	/**
+	 * Returns the width of the area where figures move.
+	 * 
+	 * @return width of the area
+	 */
+	public int getWidth() {
+		return this.width;
+	}
+
+	/**
+	 * Returns the height of the area where figures move.
+	 * 
+	 * @return height of the area
+	 */
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * Returns the array of figures.
+	 * 
+	 * @return array of figures
+	 */
+	public GraphicalFigure[] getFigures() {
+		return this.figs;
+	}
+
+	/**
+	 * Returns the number of figures.
+	 * 
+	 * @return number of figures
+	 */
+	public int getNumFigures() {
+		return this.numFigures;
+	}
+
+	/**
+	 * Returns the cache of pixel tests.
+	 * 
+	 * @return cache of pixel tests
+	 */
+	public CollisionCache getCollisionCache() {
+		return this.collisions;
+	}
+
+	/**
+	 * Returns the separations of the pairs of figures.
+	 * 
+	 * @return separations of the pairs of figures
+	 */
+	public SeparationTracker getSeparations() {
+		return this.separations;
+	}
+
+	/**
+	 * Returns the broadphase.
+	 * 
+	 * @return broadphase
+	 */
+	public BroadphaseADT getBroadphase() {
+		return this.broadphase;
+	}
+
+	/**
+	 * Returns the mask of the pixels of all the fixed figures.
+	 * 
+	 * @return mask of the fixed figures
+	 */
+	public PixelMask getWalls() {
+		return this.walls;
+	}
+
+	/**
+	 * Returns the mover of the figures.
+	 * 
+	 * @return mover
+	 */
+	public MoveFigure getMover() {
+		return this.mover;
+	}
+
+	/**
+	 * Prints how well the cache of pixel tests, the separations and the
+	 * broadphase did, to help choose them.
+	 * 
+	 */
+	public void report() {
+		System.out.println("Collision cache: " + collisions.getHits() + " hits, " + collisions.getMisses()
+				+ " misses, " + collisions.getEvictions() + " evictions, capacity " + collisions.getCapacity());
+		System.out.println("Separations: " + separations.getTests() + " pairs tested, " + separations.getSkips()
+				+ " skipped");
+		System.out.println("Broadphase " + broadphase.getClass().getName() + ": " + broadphase.getCandidates()
+				+ " candidates in " + broadphase.getQueries() + " queries, "
+				+ broadphase.getQueries() * (numFigures - 1) + " for the loop over all the figures");
+	}
+
+	/**
+	 * Helper method. Puts the pixels of all the fixed figures in a single mask,
+	 * so a mover is tested against all of them at once. Fixed figures never
+	 * move, so the mask is built only once.
+	 * 
+	 * @return mask of the fixed figures
+	 */
+	private PixelMask buildWalls() {
+		PixelMask[] masks = new PixelMask[numFigures];
+		int[] xs = new int[numFigures], ys = new int[numFigures];
+		int n = 0;
+		for (int i = 0; i < numFigures; ++i)
+			if (figs[i].getType().equals(FIXED)) {
+				masks[n] = figs[i].getMask();
+				xs[n] = figs[i].getX();
+				ys[n++] = figs[i].getY();
+			}
+		return new PixelMask(masks, xs, ys, n);
+	}
+}
@@ -0,0 +1,12 @@
+public interface WorldListener {
+	/*
+	 * Called after figure fig moved from (fromX, fromY) to its current offset
+	 */
+	public void figureMoved(GraphicalFigure fig, int fromX, int fromY);
+
+	/*
+	 * Called when figure fig is destroyed, before it is taken out of the world,
+	 * so it still has its type and offset
+	 */
+	public void figureKilled(GraphicalFigure fig);
+}
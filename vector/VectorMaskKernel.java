@@ -0,0 +1,104 @@
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Tests two pixel masks for overlap with the Java Vector API. The masks are read
+ * word column by word column (see PixelMask.getColumns()), so each vector holds
+ * the same word of several consecutive rows; the words of the other mask are
+ * shifted into alignment lane by lane, AND-ed with those of this mask and
+ * tested all at once.
+ * 
+ * This class must be compiled and run with --add-modules jdk.incubator.vector.
+ * PixelMask loads it by name and falls back to its portable loop if it is
+ * missing.
+ * 
+ * @author Bazillah Zargar
+ */
+public class VectorMaskKernel implements MaskKernel {
+
+	private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+	/**
+	 * Returns true if masks a and b have a pixel in common in rows rowFrom to
+	 * rowTo of a when the figure of b is placed at (dx, dy) relative to the figure
+	 * of a.
+	 * 
+	 * @param a       is the first mask
+	 * @param b       is the second mask
+	 * @param dx      is the x offset of the figure of b minus that of the figure of a
+	 * @param dy      is the y offset of the figure of b minus that of the figure of a
+	 * @param rowFrom is the first row of a to test
+	 * @param rowTo   is the last row of a to test
+	 * @return true if the masks overlap and false otherwise
+	 */
+	public boolean intersects(PixelMask a, PixelMask b, int dx, int dy, int rowFrom, int rowTo) {
+		// Offset of the first column and row of b in a
+		int shiftX = b.getX0() + dx - a.getX0();
+		int shiftY = b.getY0() + dy - a.getY0();
+		int colMin = Math.max(0, shiftX);
+		int colMax = Math.min(a.getWidth(), b.getWidth() + shiftX) - 1;
+		int rowMin = Math.max(rowFrom, shiftY);
+		int rowMax = Math.min(rowTo + 1, Math.min(a.getHeight(), b.getHeight() + shiftY)) - 1;
+		if ((colMin > colMax) || (rowMin > rowMax)) {
+			return false;
+		}
+		int rows = rowMax - rowMin + 1;
+		if (rows < SPECIES.length()) {
+			// Too few rows to fill a vector
+			return a.intersectsScalar(b, dx, dy, rowFrom, rowTo);
+		}
+
+		long[] aColumns = a.getColumns();
+		long[] bColumns = b.getColumns();
+		int aHeight = a.getHeight();
+		int bHeight = b.getHeight();
+		int bWords = b.getWordsPerRow();
+		int bound = SPECIES.loopBound(rows);
+		LongVector zero = LongVector.zero(SPECIES);
+
+		for (int w = colMin >>> 6; w <= (colMax >>> 6); ++w) {
+			// Bits of b aligned with word w of a are (b[lo] >>> shift) | (b[lo + 1] << (64 - shift))
+			int start = (w << 6) - shiftX;
+			int lo = start >> 6;
+			int shift = start & 63;
+			boolean hasLo = (lo >= 0) && (lo < bWords);
+			boolean hasHi = (shift != 0) && (lo + 1 >= 0) && (lo + 1 < bWords);
+			if (!hasLo && !hasHi) {
+				continue;
+			}
+			int aBase = w * aHeight + rowMin;
+			int loBase = lo * bHeight + rowMin - shiftY;
+			int hiBase = (lo + 1) * bHeight + rowMin - shiftY;
+
+			int i = 0;
+			for (; i < bound; i += SPECIES.length()) {
+				LongVector bits = zero;
+				if (hasLo) {
+					bits = LongVector.fromArray(SPECIES, bColumns, loBase + i).lanewise(VectorOperators.LSHR, shift);
+				}
+				if (hasHi) {
+					bits = bits.or(LongVector.fromArray(SPECIES, bColumns, hiBase + i).lanewise(VectorOperators.LSHL,
+							64 - shift));
+				}
+				if (LongVector.fromArray(SPECIES, aColumns, aBase + i).and(bits).compare(VectorOperators.NE, 0)
+						.anyTrue()) {
+					return true;
+				}
+			}
+			for (; i < rows; ++i) {
+				long bits = 0;
+				if (hasLo) {
+					bits = bColumns[loBase + i] >>> shift;
+				}
+				if (hasHi) {
+					bits |= bColumns[hiBase + i] << (64 - shift);
+				}
+				if ((aColumns[aBase + i] & bits) != 0) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+}